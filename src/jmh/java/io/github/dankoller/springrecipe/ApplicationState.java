@@ -0,0 +1,77 @@
+package io.github.dankoller.springrecipe;
+
+import io.github.dankoller.springrecipe.entity.Recipe;
+import io.github.dankoller.springrecipe.entity.user.User;
+import io.github.dankoller.springrecipe.persistence.RecipeRepository;
+import io.github.dankoller.springrecipe.persistence.UserRepository;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class boots the application without a web server against an embedded in-memory H2 database and seeds it
+ * with a user and recipes. It is shared by all benchmarks that need the application context.
+ */
+@State(Scope.Benchmark)
+public class ApplicationState {
+    public static final String USER_EMAIL = "benchmark@example.com";
+    public static final String USER_PASSWORD = "benchmark-password";
+    public static final int RECIPES = 1_000;
+    public static final String[] CATEGORIES = {"Beverage", "Dessert", "Soup", "Salad", "Main course"};
+
+    public ConfigurableApplicationContext context;
+    public long firstRecipeId;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(SpringrecipeApplication.class)
+                .run("--spring.main.web-application-type=none",
+                        "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=warn");
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        User user = userRepository.save(new User(USER_EMAIL,
+                context.getBean(PasswordEncoder.class).encode(USER_PASSWORD)));
+        List<Recipe> recipes = new ArrayList<>(RECIPES);
+        for (int i = 0; i < RECIPES; i++) {
+            recipes.add(newRecipe(i, user));
+        }
+        RecipeRepository recipeRepository = context.getBean(RecipeRepository.class);
+        firstRecipeId = recipeRepository.saveAll(recipes).iterator().next().getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    /**
+     * This method creates a recipe with a realistic amount of ingredients and directions.
+     *
+     * @param i      The number of the recipe
+     * @param author The author of the recipe
+     * @return The recipe
+     */
+    public static Recipe newRecipe(int i, User author) {
+        return new Recipe(
+                "Recipe " + i,
+                CATEGORIES[i % CATEGORIES.length],
+                LocalDateTime.now().minusMinutes(i),
+                "The description of recipe number " + i,
+                new String[]{"boiled water", "honey", "fresh mint leaves", "lemon", "ingredient " + i},
+                new String[]{"Boil water", "Pour boiling hot water into a mug", "Add fresh mint leaves",
+                        "Mix and let the mint leaves seep for 3-5 minutes", "Add honey and mix again"},
+                author);
+    }
+}
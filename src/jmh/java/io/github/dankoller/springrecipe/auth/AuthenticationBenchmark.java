@@ -0,0 +1,54 @@
+package io.github.dankoller.springrecipe.auth;
+
+import io.github.dankoller.springrecipe.ApplicationState;
+import io.github.dankoller.springrecipe.entity.user.UserDetailsServiceImpl;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark compares the per-request authentication cost of HTTP Basic (uncached and cached) with the
+ * verification of an access token.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AuthenticationBenchmark {
+    private DaoAuthenticationProvider daoAuthenticationProvider;
+    private CachingAuthenticationProvider cachingAuthenticationProvider;
+    private TokenService tokenService;
+    private String authorization;
+
+    @Setup
+    public void setup(ApplicationState state) {
+        daoAuthenticationProvider = new DaoAuthenticationProvider();
+        daoAuthenticationProvider.setUserDetailsService(state.context.getBean(UserDetailsServiceImpl.class));
+        daoAuthenticationProvider.setPasswordEncoder(state.context.getBean(PasswordEncoder.class));
+        cachingAuthenticationProvider = state.context.getBean(CachingAuthenticationProvider.class);
+        tokenService = state.context.getBean(TokenService.class);
+        authorization = "Bearer " + tokenService.issue(ApplicationState.USER_EMAIL).accessToken();
+    }
+
+    @Benchmark
+    public Authentication basic() {
+        return daoAuthenticationProvider.authenticate(credentials());
+    }
+
+    @Benchmark
+    public Authentication basicCached() {
+        return cachingAuthenticationProvider.authenticate(credentials());
+    }
+
+    @Benchmark
+    public Authentication token() {
+        return tokenService.authenticate(authorization);
+    }
+
+    private static UsernamePasswordAuthenticationToken credentials() {
+        return new UsernamePasswordAuthenticationToken(ApplicationState.USER_EMAIL, ApplicationState.USER_PASSWORD);
+    }
+}
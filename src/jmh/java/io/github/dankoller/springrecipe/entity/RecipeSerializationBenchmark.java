@@ -0,0 +1,58 @@
+package io.github.dankoller.springrecipe.entity;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.dankoller.springrecipe.ApplicationState;
+import io.github.dankoller.springrecipe.render.RenderedRecipeCache;
+import io.github.dankoller.springrecipe.request.RecipeRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * This benchmark measures the Jackson (de)serialization of recipes with the same ObjectMapper configuration Spring
+ * Boot uses for the REST API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RecipeSerializationBenchmark {
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final RenderedRecipeCache renderedRecipeCache = new RenderedRecipeCache(objectMapper,
+            new SimpleMeterRegistry(), 64 * 1024 * 1024, Duration.ofMinutes(10), 1024);
+    private Recipe recipe;
+    private List<Recipe> searchResult;
+    private String recipeRequestJson;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        recipe = ApplicationState.newRecipe(0, null);
+        searchResult = IntStream.range(0, 100).mapToObj(i -> ApplicationState.newRecipe(i, null)).toList();
+        recipeRequestJson = objectMapper.writeValueAsString(recipe);
+    }
+
+    @Benchmark
+    public byte[] serializeRecipe() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(recipe);
+    }
+
+    @Benchmark
+    public byte[] renderCachedRecipe() {
+        return renderedRecipeCache.render(recipe).json();
+    }
+
+    @Benchmark
+    public byte[] serializeSearchResult() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(searchResult);
+    }
+
+    @Benchmark
+    public RecipeRequest deserializeRecipeRequest() throws JsonProcessingException {
+        return objectMapper.readValue(recipeRequestJson, RecipeRequest.class);
+    }
+}
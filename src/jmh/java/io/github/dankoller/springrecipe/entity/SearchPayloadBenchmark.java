@@ -0,0 +1,108 @@
+package io.github.dankoller.springrecipe.entity;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import io.github.dankoller.springrecipe.ApplicationState;
+import io.github.dankoller.springrecipe.request.RecipeRequest;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This benchmark compares the cost of large search responses with and without the Blackbird module, and with and
+ * without gzip compression. The bytes on the wire are reported as the secondary results "bytes" and "responses" of
+ * the serializing benchmarks; bytes divided by responses is the size of one response in the respective encoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchPayloadBenchmark {
+    @Param({"false", "true"})
+    public boolean blackbird;
+    @Param({"100", "1000"})
+    public int recipes;
+
+    private ObjectMapper objectMapper;
+    private List<Recipe> searchResult;
+    private List<String> recipeRequestJson;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        if (blackbird) {
+            builder.modulesToInstall(new BlackbirdModule());
+        }
+        objectMapper = builder.build();
+        searchResult = IntStream.range(0, recipes).mapToObj(i -> ApplicationState.newRecipe(i, null)).toList();
+        recipeRequestJson = searchResult.stream().map(recipe -> {
+            try {
+                return objectMapper.writeValueAsString(recipe);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        }).toList();
+    }
+
+    @Benchmark
+    public byte[] serializeSearchResult(WireBytes wireBytes) throws JsonProcessingException {
+        return wireBytes.sent(objectMapper.writeValueAsBytes(searchResult));
+    }
+
+    @Benchmark
+    public byte[] serializeAndGzipSearchResult(WireBytes wireBytes) throws JsonProcessingException {
+        return wireBytes.sent(gzip(objectMapper.writeValueAsBytes(searchResult)));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public Object deserializeRecipeRequests() throws JsonProcessingException {
+        Object last = null;
+        for (int i = 0; i < 100; i++) {
+            last = objectMapper.readValue(recipeRequestJson.get(i), RecipeRequest.class);
+        }
+        return last;
+    }
+
+    /**
+     * The bytes sent by a benchmark, reported by JMH next to its score.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class WireBytes {
+        public long bytes;
+        public long responses;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            responses = 0;
+        }
+
+        private byte[] sent(byte[] response) {
+            bytes += response.length;
+            responses++;
+            return response;
+        }
+    }
+
+    /**
+     * A helper method to gzip compress a byte array like the servlet container does.
+     */
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return outputStream.toByteArray();
+    }
+}
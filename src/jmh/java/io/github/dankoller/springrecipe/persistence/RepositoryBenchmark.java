@@ -0,0 +1,79 @@
+package io.github.dankoller.springrecipe.persistence;
+
+import io.github.dankoller.springrecipe.ApplicationState;
+import io.github.dankoller.springrecipe.entity.Recipe;
+import io.github.dankoller.springrecipe.entity.user.UserDetailsImpl;
+import io.github.dankoller.springrecipe.entity.user.UserDetailsServiceImpl;
+import io.github.dankoller.springrecipe.search.RecipeSearchIndex;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures the repository queries behind the REST API against an embedded H2 database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RepositoryBenchmark {
+    private UserDetailsServiceImpl userDetailsService;
+    private RecipeRepository recipeRepository;
+    private RecipeSearchIndex recipeSearchIndex;
+    private long recipeId;
+
+    @Setup
+    public void setup(ApplicationState state) {
+        userDetailsService = state.context.getBean(UserDetailsServiceImpl.class);
+        recipeRepository = state.context.getBean(RecipeRepository.class);
+        recipeSearchIndex = state.context.getBean(RecipeSearchIndex.class);
+        recipeSearchIndex.rebuild();
+        recipeId = state.firstRecipeId;
+    }
+
+    @Benchmark
+    public UserDetailsImpl loadUserByUsername() {
+        return userDetailsService.loadUserByUsername(ApplicationState.USER_EMAIL);
+    }
+
+    @Benchmark
+    public Optional<Recipe> findByIdCached() {
+        return recipeRepository.findById(recipeId);
+    }
+
+    @Benchmark
+    public Optional<Recipe> findByIdUncached() {
+        return recipeRepository.findRecipeById(recipeId);
+    }
+
+    @Benchmark
+    public Optional<Recipe> findByIdAndOwner() {
+        return recipeRepository.findRecipeByIdAndAuthorEmail(recipeId, ApplicationState.USER_EMAIL);
+    }
+
+    @Benchmark
+    public Slice<Recipe> findPageByCategory() {
+        return recipeRepository.findAllByCategoryKey(Recipe.toCategoryKey(ApplicationState.CATEGORIES[0]),
+                PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "date", "id")));
+    }
+
+    @Benchmark
+    public List<Recipe> findAllByCategory() {
+        return recipeRepository.findAllByCategoryKeyOrderByDateDesc(
+                Recipe.toCategoryKey(ApplicationState.CATEGORIES[0]));
+    }
+
+    @Benchmark
+    public List<Recipe> findAllByNameLike() {
+        return recipeRepository.findAllByNameContainingIgnoreCaseOrderByDateDesc("recipe 12");
+    }
+
+    @Benchmark
+    public List<Recipe> searchIndex() {
+        return recipeSearchIndex.search("recipe 12");
+    }
+}
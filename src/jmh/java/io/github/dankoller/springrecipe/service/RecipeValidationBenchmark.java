@@ -0,0 +1,38 @@
+package io.github.dankoller.springrecipe.service;
+
+import io.github.dankoller.springrecipe.request.RecipeRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures the validation of recipe requests, which runs for every posted, updated and imported
+ * recipe.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RecipeValidationBenchmark {
+    private final RecipeService recipeService = new RecipeService();
+    private RecipeRequest validRequest;
+    private RecipeRequest blankRequest;
+
+    @Setup
+    public void setup() {
+        validRequest = new RecipeRequest("Mint tea", "Beverage", "Light, aromatic and refreshing",
+                new String[]{"boiled water", "honey", "fresh mint leaves"},
+                new String[]{"Boil water", "Pour boiling hot water into a mug", "Add fresh mint leaves"});
+        blankRequest = new RecipeRequest("      ", "      ", "       ",
+                new String[]{"Something"}, new String[]{"Do stuff"});
+    }
+
+    @Benchmark
+    public boolean validRequest() {
+        return recipeService.isValidRecipeRequest(validRequest);
+    }
+
+    @Benchmark
+    public boolean blankRequest() {
+        return recipeService.isValidRecipeRequest(blankRequest);
+    }
+}
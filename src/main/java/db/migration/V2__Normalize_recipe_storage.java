@@ -0,0 +1,106 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.sql.*;
+
+/**
+ * This migration moves the ingredients and directions of all recipes from the serialized String[] columns into the
+ * ordered recipe_ingredient and recipe_direction tables and adds the indexes used by the recipe queries.
+ * <p>
+ * It is a Java migration, because the old columns contain Java-serialized arrays that can't be read with SQL.
+ */
+@SuppressWarnings("unused")
+public class V2__Normalize_recipe_storage extends BaseJavaMigration {
+    // Only String arrays may be deserialized from the old columns
+    private static final ObjectInputFilter STRING_ARRAY_FILTER =
+            ObjectInputFilter.Config.createFilter("java.lang.String;[Ljava.lang.String;!*");
+    private static final int BATCH_SIZE = 500;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            // Indexed, lower-cased copy of the category
+            statement.execute("alter table recipe add column category_key varchar(255)");
+            statement.execute("update recipe set category_key = lower(category)");
+
+            statement.execute("create table recipe_ingredient ("
+                    + "recipe_id bigint not null, "
+                    + "ingredient varchar(255), "
+                    + "ingredient_order integer not null, "
+                    + "primary key (recipe_id, ingredient_order), "
+                    + "constraint fk_recipe_ingredient_recipe foreign key (recipe_id) references recipe (id) "
+                    + "on delete cascade)");
+            statement.execute("create table recipe_direction ("
+                    + "recipe_id bigint not null, "
+                    + "direction varchar(2000), "
+                    + "direction_order integer not null, "
+                    + "primary key (recipe_id, direction_order), "
+                    + "constraint fk_recipe_direction_recipe foreign key (recipe_id) references recipe (id) "
+                    + "on delete cascade)");
+        }
+
+        copyElements(connection);
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("alter table recipe drop column ingredients");
+            statement.execute("alter table recipe drop column directions");
+
+            statement.execute("create index idx_recipe_category_key_date on recipe (category_key, date desc)");
+            statement.execute("create index idx_recipe_author on recipe (author_id)");
+            statement.execute("create index idx_recipe_ingredient on recipe_ingredient (ingredient)");
+        }
+    }
+
+    /**
+     * A helper method to copy the serialized arrays of all recipes into the element tables.
+     */
+    private void copyElements(Connection connection) throws SQLException, IOException, ClassNotFoundException {
+        try (Statement select = connection.createStatement();
+             ResultSet recipes = select.executeQuery("select id, ingredients, directions from recipe");
+             PreparedStatement insertIngredient = connection.prepareStatement(
+                     "insert into recipe_ingredient (recipe_id, ingredient, ingredient_order) values (?, ?, ?)");
+             PreparedStatement insertDirection = connection.prepareStatement(
+                     "insert into recipe_direction (recipe_id, direction, direction_order) values (?, ?, ?)")) {
+            int pending = 0;
+            while (recipes.next()) {
+                long id = recipes.getLong("id");
+                pending += addElements(insertIngredient, id, deserialize(recipes.getBytes("ingredients")));
+                pending += addElements(insertDirection, id, deserialize(recipes.getBytes("directions")));
+                if (pending >= BATCH_SIZE) {
+                    insertIngredient.executeBatch();
+                    insertDirection.executeBatch();
+                    pending = 0;
+                }
+            }
+            insertIngredient.executeBatch();
+            insertDirection.executeBatch();
+        }
+    }
+
+    private static int addElements(PreparedStatement insert, long recipeId, String[] elements) throws SQLException {
+        for (int i = 0; i < elements.length; i++) {
+            insert.setLong(1, recipeId);
+            insert.setString(2, elements[i]);
+            insert.setInt(3, i);
+            insert.addBatch();
+        }
+        return elements.length;
+    }
+
+    private static String[] deserialize(byte[] value) throws IOException, ClassNotFoundException {
+        if (value == null) {
+            return new String[0];
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(value))) {
+            in.setObjectInputFilter(STRING_ARRAY_FILTER);
+            return (String[]) in.readObject();
+        }
+    }
+}
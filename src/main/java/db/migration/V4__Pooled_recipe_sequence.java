@@ -0,0 +1,33 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * This migration replaces the shared hibernate_sequence (increment 1) of the recipe ids with the pooled recipe_seq
+ * (increment 50), which lets Hibernate allocate ids for 50 recipes per sequence call and batch their inserts.
+ */
+@SuppressWarnings("unused")
+public class V4__Pooled_recipe_sequence extends BaseJavaMigration {
+    // Has to match the allocationSize of the recipe id generator
+    private static final int INCREMENT = 50;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        try (Statement statement = context.getConnection().createStatement()) {
+            long maxId;
+            try (ResultSet result = statement.executeQuery("select coalesce(max(id), 0) from recipe")) {
+                result.next();
+                maxId = result.getLong(1);
+            }
+            // The pooled optimizer hands out the INCREMENT ids up to the sequence value,
+            // so the first value has to be far enough above the existing ids
+            statement.execute("create sequence recipe_seq start with " + (maxId + INCREMENT + 1)
+                    + " increment by " + INCREMENT);
+            statement.execute("drop sequence if exists hibernate_sequence");
+        }
+    }
+}
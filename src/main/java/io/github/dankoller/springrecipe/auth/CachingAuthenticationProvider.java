@@ -0,0 +1,122 @@
+package io.github.dankoller.springrecipe.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.dankoller.springrecipe.entity.user.UserDetailsServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * This class puts a bounded, TTL-evicting cache in front of the BCrypt based {@link DaoAuthenticationProvider}, so
+ * that repeated HTTP Basic requests with the same credentials don't pay for a user lookup and a BCrypt verification
+ * every time.
+ */
+@Component
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+    private final DaoAuthenticationProvider delegate;
+    private final Cache<CredentialKey, Authentication> cache;
+    // Per-process key, so the cache never holds a plain (fast) hash of a password
+    private final SecretKey digestKey;
+
+    public CachingAuthenticationProvider(UserDetailsServiceImpl userDetailsService,
+                                         PasswordEncoder passwordEncoder,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${auth.cache.maximum-size:10000}") long maximumSize,
+                                         @Value("${auth.cache.ttl:5m}") Duration ttl) throws GeneralSecurityException {
+        this.delegate = new DaoAuthenticationProvider();
+        this.delegate.setUserDetailsService(userDetailsService);
+        this.delegate.setPasswordEncoder(passwordEncoder);
+        // Re-hashes passwords stored with a lower BCrypt strength after a successful login
+        this.delegate.setUserDetailsPasswordService(userDetailsService);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.digestKey = KeyGenerator.getInstance("HmacSHA256").generateKey();
+        // Publishes hit, miss, eviction and size metrics through the actuator
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "authentication");
+    }
+
+    /**
+     * This method returns the cached authentication for the presented credentials if they have been verified
+     * recently, otherwise it delegates to the {@link DaoAuthenticationProvider} and caches a successful result.
+     *
+     * @param authentication The authentication request
+     * @return The fully authenticated object
+     */
+    @Override
+    public Authentication authenticate(Authentication authentication) {
+        Object credentials = authentication.getCredentials();
+        if (credentials == null) {
+            return delegate.authenticate(authentication);
+        }
+        CredentialKey key = new CredentialKey(normalize(authentication.getName()),
+                digest(authentication.getName(), credentials.toString()));
+        Authentication cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        // Failed attempts throw and are never cached
+        Authentication result = delegate.authenticate(authentication);
+        cache.put(key, result);
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+
+    /**
+     * This method removes all cached authentications of a user. It has to be called whenever the user or its
+     * password changes.
+     *
+     * @param email The email of the user
+     */
+    public void evict(String email) {
+        if (email == null) {
+            return;
+        }
+        String normalized = normalize(email);
+        cache.asMap().keySet().removeIf(key -> key.email().equals(normalized));
+    }
+
+    /**
+     * A helper method to compute a keyed digest of the presented credentials.
+     */
+    private String digest(String email, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(digestKey);
+            mac.update(normalize(email).getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return Base64.getEncoder().encodeToString(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private static String normalize(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    private record CredentialKey(String email, String digest) {
+    }
+}
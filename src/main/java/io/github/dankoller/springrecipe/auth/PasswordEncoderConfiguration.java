@@ -0,0 +1,23 @@
+package io.github.dankoller.springrecipe.auth;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+@Configuration
+@SuppressWarnings("unused")
+public class PasswordEncoderConfiguration {
+    /**
+     * This method is used to encrypt the password of the user using the BCryptPasswordEncoder. It is shared by the
+     * servlet and the reactive security configuration. Hashes of a lower strength are upgraded on the next login.
+     *
+     * @param strength The log rounds of BCrypt
+     * @return the {@link PasswordEncoder} to use
+     */
+    @Bean
+    public static PasswordEncoder getEncoder(@Value("${auth.bcrypt.strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
+    }
+}
@@ -0,0 +1,101 @@
+package io.github.dankoller.springrecipe.auth;
+
+import io.github.dankoller.springrecipe.ratelimit.RateLimiter;
+import io.github.dankoller.springrecipe.ratelimit.ReactiveRateLimitFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.AuthenticationWebFilter;
+import org.springframework.security.web.server.authentication.HttpStatusServerEntryPoint;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * This class configures the security of the reactive variant of the API with the same rules as
+ * {@link WebSecurityConfigurerImpl}: access tokens, and HTTP Basic against the same user store and authentication
+ * cache.
+ */
+@Configuration
+@EnableWebFluxSecurity
+@Profile("reactive")
+@SuppressWarnings("unused")
+public class ReactiveWebSecurityConfiguration {
+    /**
+     * This method is used to authenticate with the {@link CachingAuthenticationProvider}. It loads users and
+     * verifies passwords blocking, so it runs on the JDBC scheduler.
+     *
+     * @param cachingAuthenticationProvider The provider to delegate to
+     * @param jdbcScheduler                 The scheduler for blocking calls
+     * @return The {@link ReactiveAuthenticationManager} to use
+     */
+    @Bean
+    public ReactiveAuthenticationManager reactiveAuthenticationManager(
+            CachingAuthenticationProvider cachingAuthenticationProvider, Scheduler jdbcScheduler) {
+        return authentication -> Mono.fromCallable(() -> cachingAuthenticationProvider.authenticate(authentication))
+                .subscribeOn(jdbcScheduler);
+    }
+
+    /**
+     * This method is used to configure the security of the web application by restricting access based on the
+     * request path. Requests are authenticated by an access token, or with HTTP Basic as long as auth.basic.enabled
+     * is true. Unless disabled, the {@link RateLimiter} limits client addresses before and users after
+     * authentication.
+     *
+     * @param http                  the {@link ServerHttpSecurity} to modify
+     * @param authenticationManager the {@link ReactiveAuthenticationManager} to use
+     * @param tokenService          the {@link TokenService} verifying access tokens
+     * @param rateLimiter           the {@link RateLimiter} limiting the request rate
+     * @param basicEnabled          whether HTTP Basic is accepted
+     * @return the {@link SecurityWebFilterChain}
+     */
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
+                                                         ReactiveAuthenticationManager authenticationManager,
+                                                         TokenService tokenService,
+                                                         RateLimiter rateLimiter,
+                                                         @Value("${auth.basic.enabled:true}") boolean basicEnabled) {
+        HttpStatusServerEntryPoint entryPoint = new HttpStatusServerEntryPoint(HttpStatus.UNAUTHORIZED);
+        if (basicEnabled) {
+            http
+                    .httpBasic()
+                    .authenticationManager(authenticationManager)
+                    .authenticationEntryPoint(entryPoint); // handles 401 auth error
+        } else {
+            http.httpBasic().disable();
+        }
+        // The token has been verified by the converter already
+        AuthenticationWebFilter tokenFilter = new AuthenticationWebFilter(
+                (ReactiveAuthenticationManager) Mono::just);
+        tokenFilter.setServerAuthenticationConverter(exchange -> Mono.justOrEmpty(
+                tokenService.authenticate(exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION))));
+        if (rateLimiter.isEnabled()) {
+            http
+                    .addFilterBefore(new ReactiveRateLimitFilter(rateLimiter, false),
+                            SecurityWebFiltersOrder.HTTP_BASIC)
+                    .addFilterAfter(new ReactiveRateLimitFilter(rateLimiter, true),
+                            SecurityWebFiltersOrder.AUTHENTICATION);
+        }
+        return http
+                .addFilterAt(tokenFilter, SecurityWebFiltersOrder.AUTHENTICATION)
+                .exceptionHandling().authenticationEntryPoint(entryPoint)
+                .and()
+                .csrf().disable().headers().frameOptions().disable() // for Postman
+                .and()
+                .authorizeExchange()
+                // Api endpoints
+                .pathMatchers("/api/register", "/api/login", "/api/token/refresh").permitAll()
+                .pathMatchers("/api/recipe/").hasRole("USER")
+                .pathMatchers("/api/recipe/**").hasRole("USER")
+                .anyExchange().permitAll()
+                .and()
+                .build();
+    }
+}
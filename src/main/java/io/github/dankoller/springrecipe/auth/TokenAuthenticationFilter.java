@@ -0,0 +1,39 @@
+package io.github.dankoller.springrecipe.auth;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * This filter authenticates requests carrying a valid access token ("Authorization: Bearer ..."). Requests without
+ * one pass through unauthenticated. It is added to the security filter chain by {@link WebSecurityConfigurerImpl}
+ * and therefore isn't a bean (which would register it as servlet filter a second time).
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+    private final TokenService tokenService;
+
+    public TokenAuthenticationFilter(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Authentication authentication = tokenService.authenticate(request.getHeader(HttpHeaders.AUTHORIZATION));
+        if (authentication != null) {
+            SecurityContext context = SecurityContextHolder.createEmptyContext();
+            context.setAuthentication(authentication);
+            SecurityContextHolder.setContext(context);
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.dankoller.springrecipe.auth;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The response of a login or refresh: a short-lived access token and a longer-lived refresh token.
+ *
+ * @param accessToken  The token to send as "Authorization: Bearer" header
+ * @param refreshToken The token to get a new access token with
+ * @param tokenType    The type of the access token (always "Bearer")
+ * @param expiresIn    The lifetime of the access token in seconds
+ */
+public record TokenResponse(@JsonProperty("access_token") String accessToken,
+                            @JsonProperty("refresh_token") String refreshToken,
+                            @JsonProperty("token_type") String tokenType,
+                            @JsonProperty("expires_in") long expiresIn) {
+}
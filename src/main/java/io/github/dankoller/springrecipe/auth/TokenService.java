@@ -0,0 +1,162 @@
+package io.github.dankoller.springrecipe.auth;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.dankoller.springrecipe.entity.user.UserDetailsImpl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class issues and verifies HMAC-SHA256 signed JSON Web Tokens. Verifying a token only needs the local key, so
+ * requests carrying a token are authenticated without a user lookup or a BCrypt verification.
+ */
+@Component
+public class TokenService {
+    public static final String ACCESS = "access";
+    public static final String REFRESH = "refresh";
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String HEADER = base64Url("{\"alg\":\"HS256\",\"typ\":\"JWT\"}"
+            .getBytes(StandardCharsets.UTF_8));
+
+    private final ObjectMapper objectMapper;
+    private final Duration accessTokenTtl;
+    private final Duration refreshTokenTtl;
+    // Mac instances aren't thread-safe and relatively expensive to create, so every thread keeps its own
+    private final ThreadLocal<Mac> mac;
+
+    public TokenService(ObjectMapper objectMapper,
+                        @Value("${auth.token.secret:}") String secret,
+                        @Value("${auth.token.ttl:15m}") Duration accessTokenTtl,
+                        @Value("${auth.token.refresh-ttl:7d}") Duration refreshTokenTtl) throws GeneralSecurityException {
+        this.objectMapper = objectMapper;
+        this.accessTokenTtl = accessTokenTtl;
+        this.refreshTokenTtl = refreshTokenTtl;
+        // Without a configured secret the tokens are only valid for this process
+        SecretKey key = secret.isBlank()
+                ? KeyGenerator.getInstance("HmacSHA256").generateKey()
+                : new SecretKeySpec(Base64.getDecoder().decode(secret), "HmacSHA256");
+        // Fails on startup if the key can't be used
+        Mac.getInstance("HmacSHA256").init(key);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance("HmacSHA256");
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 is not available", e);
+            }
+        });
+    }
+
+    /**
+     * This method issues a new access and refresh token for a user.
+     *
+     * @param email The email of the user
+     * @return The tokens
+     */
+    public TokenResponse issue(String email) {
+        return new TokenResponse(
+                sign(email, ACCESS, accessTokenTtl),
+                sign(email, REFRESH, refreshTokenTtl),
+                "Bearer",
+                accessTokenTtl.toSeconds());
+    }
+
+    /**
+     * This method verifies the signature, expiry and type of a token.
+     *
+     * @param token The token
+     * @param type  The expected type ({@link #ACCESS} or {@link #REFRESH})
+     * @return The email of the user the token was issued to, or null if the token isn't valid
+     */
+    public String verify(String token, String type) {
+        if (token == null) {
+            return null;
+        }
+        int payloadEnd = token.lastIndexOf('.');
+        if (payloadEnd < 0 || !token.startsWith(HEADER + ".")) {
+            return null;
+        }
+        byte[] signature;
+        try {
+            signature = Base64.getUrlDecoder().decode(token.substring(payloadEnd + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        // Constant time comparison, so the signature can't be guessed byte by byte
+        if (!MessageDigest.isEqual(signature, mac(token.substring(0, payloadEnd)))) {
+            return null;
+        }
+        try {
+            JsonNode claims = objectMapper.readTree(
+                    Base64.getUrlDecoder().decode(token.substring(HEADER.length() + 1, payloadEnd)));
+            if (!type.equals(claims.path("typ").asText())
+                    || claims.path("exp").asLong() <= Instant.now().getEpochSecond()) {
+                return null;
+            }
+            return claims.path("sub").textValue();
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * This method authenticates a request by the access token in its Authorization header.
+     *
+     * @param authorization The Authorization header of the request (may be null)
+     * @return The authentication of the user, or null if the header doesn't carry a valid access token
+     */
+    public Authentication authenticate(String authorization) {
+        if (authorization == null || !authorization.startsWith(BEARER_PREFIX)) {
+            return null;
+        }
+        String email = verify(authorization.substring(BEARER_PREFIX.length()).trim(), ACCESS);
+        if (email == null) {
+            return null;
+        }
+        UserDetailsImpl user = new UserDetailsImpl(email);
+        return new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+    }
+
+    /**
+     * A helper method to create a signed token.
+     */
+    private String sign(String email, String type, Duration ttl) {
+        long now = Instant.now().getEpochSecond();
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("sub", email);
+        claims.put("typ", type);
+        claims.put("iat", now);
+        claims.put("exp", now + ttl.toSeconds());
+        try {
+            String unsigned = HEADER + "." + base64Url(objectMapper.writeValueAsBytes(claims));
+            return unsigned + "." + base64Url(mac(unsigned));
+        } catch (IOException e) {
+            throw new IllegalStateException("Token claims can't be serialized", e);
+        }
+    }
+
+    private byte[] mac(String unsigned) {
+        return mac.get().doFinal(unsigned.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String base64Url(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
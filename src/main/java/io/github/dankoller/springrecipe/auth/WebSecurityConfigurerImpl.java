@@ -1,69 +1,86 @@
 package io.github.dankoller.springrecipe.auth;
 
-import io.github.dankoller.springrecipe.entity.user.UserDetailsServiceImpl;
-import org.springframework.context.annotation.Bean;
+import io.github.dankoller.springrecipe.ratelimit.RateLimitFilter;
+import io.github.dankoller.springrecipe.ratelimit.RateLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 @EnableWebSecurity
+@Profile("!reactive")
 @SuppressWarnings({"unused", "deprecation"})
 public class WebSecurityConfigurerImpl extends WebSecurityConfigurerAdapter {
     private final RestAuthenticationEntryPoint restAuthenticationEntryPoint;
-    private final UserDetailsServiceImpl userDetailsService;
+    private final CachingAuthenticationProvider cachingAuthenticationProvider;
+    private final TokenService tokenService;
+    private final RateLimiter rateLimiter;
+    private final boolean basicEnabled;
 
     public WebSecurityConfigurerImpl(RestAuthenticationEntryPoint restAuthenticationEntryPoint,
-                                     UserDetailsServiceImpl userDetailsService) {
+                                     CachingAuthenticationProvider cachingAuthenticationProvider,
+                                     TokenService tokenService,
+                                     RateLimiter rateLimiter,
+                                     @Value("${auth.basic.enabled:true}") boolean basicEnabled) {
         this.restAuthenticationEntryPoint = restAuthenticationEntryPoint;
-        this.userDetailsService = userDetailsService;
+        this.cachingAuthenticationProvider = cachingAuthenticationProvider;
+        this.tokenService = tokenService;
+        this.rateLimiter = rateLimiter;
+        this.basicEnabled = basicEnabled;
     }
 
     /**
-     * This method is used to configure the {@link AuthenticationManagerBuilder} to specify which UserDetailsService and
-     * {@link PasswordEncoder} to use.
+     * This method is used to configure the {@link AuthenticationManagerBuilder} to use the
+     * {@link CachingAuthenticationProvider}, which verifies credentials with the UserDetailsService and the
+     * {@link PasswordEncoder} only if they are not cached yet.
      *
      * @param auth The {@link AuthenticationManagerBuilder} to use
      * @throws Exception If an error occurs
      */
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth
-                .userDetailsService(userDetailsService)
-                .passwordEncoder(getEncoder());
+        auth.authenticationProvider(cachingAuthenticationProvider);
     }
 
     /**
      * This method is used to configure the security of the web application by restricting access based on the
-     * HttpServletRequest.
+     * HttpServletRequest. Requests are authenticated by an access token, or with HTTP Basic as long as
+     * auth.basic.enabled is true. No session is created, every request carries its credentials. Unless disabled,
+     * the {@link RateLimiter} limits client addresses before and users after authentication.
      *
      * @param http the {@link HttpSecurity} to modify
      * @throws Exception if an error occurs
      */
     @Override
     public void configure(HttpSecurity http) throws Exception {
+        if (basicEnabled) {
+            http
+                    .httpBasic()
+                    .authenticationEntryPoint(restAuthenticationEntryPoint); // handles 401 auth error
+        }
+        if (rateLimiter.isEnabled()) {
+            // Added first, so client addresses are limited before the token filter as well
+            http
+                    .addFilterBefore(new RateLimitFilter(rateLimiter, false), BasicAuthenticationFilter.class)
+                    .addFilterAfter(new RateLimitFilter(rateLimiter, true), BasicAuthenticationFilter.class);
+        }
         http
-                .httpBasic()
-                .authenticationEntryPoint(restAuthenticationEntryPoint) // handles 401 auth error
+                .addFilterBefore(new TokenAuthenticationFilter(tokenService), BasicAuthenticationFilter.class)
+                .exceptionHandling().authenticationEntryPoint(restAuthenticationEntryPoint) // handles 401 auth error
+                .and()
+                .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 .and()
                 .csrf().disable().headers().frameOptions().disable() // for Postman, H2 console
                 .and()
                 .authorizeRequests()
                 // Api endpoints
-                .mvcMatchers("/api/register").permitAll()
+                .mvcMatchers("/api/register", "/api/login", "/api/token/refresh").permitAll()
                 .mvcMatchers("/api/recipe/").hasRole("USER")
                 .mvcMatchers("/api/recipe/**").hasRole("USER");
     }
-
-    /**
-     * This method is used to encrypt the password of the user using the BCryptPasswordEncoder.
-     *
-     * @return the {@link PasswordEncoder} to use
-     */
-    @Bean
-    public static PasswordEncoder getEncoder() {
-        return new BCryptPasswordEncoder();
-    }
 }
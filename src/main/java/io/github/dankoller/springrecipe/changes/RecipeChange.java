@@ -0,0 +1,19 @@
+package io.github.dankoller.springrecipe.changes;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * This class is an event of the recipe change feed. It is used as data of the server-sent events.
+ *
+ * @param sequence The sequence number of the change (the id of the event)
+ * @param type     The type of the change: created, updated, deleted, or resync if the subscriber missed changes
+ * @param id       The id of the changed recipe (null for resync)
+ * @param version  The version of the recipe after the change (null for deleted and resync)
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RecipeChange(long sequence, String type, Long id, Long version) {
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String DELETED = "deleted";
+    public static final String RESYNC = "resync";
+}
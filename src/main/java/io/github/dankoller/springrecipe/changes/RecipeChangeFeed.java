@@ -0,0 +1,196 @@
+package io.github.dankoller.springrecipe.changes;
+
+import io.github.dankoller.springrecipe.entity.Recipe;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class publishes the created, updated and deleted recipes as a feed of server-sent events. Every change gets
+ * the next sequence number, which is sent as the event id, and is kept in a ring buffer of the most recent changes.
+ * <p>
+ * Subscribers don't get a queue of their own: each one reads the ring buffer from its last sequence number as far as
+ * its demand allows, so a slow subscriber holds back only its own stream. A subscriber that falls behind by more
+ * than the ring buffer holds (or reconnects with a Last-Event-ID that is no longer buffered) gets a resync event
+ * carrying the current sequence number, and the stream ends. It then has to reload the recipes and can resume the
+ * feed from that sequence number.
+ * <p>
+ * The sequence starts at the startup time in microseconds, so the sequence numbers of a restarted instance are
+ * larger than the ones handed out before and resuming with an old id always leads to a resync.
+ */
+@Component
+public class RecipeChangeFeed {
+    public static final String SUBSCRIBERS_METRIC = "recipes.changes.subscribers";
+    public static final String RESYNCS_METRIC = "recipes.changes.resyncs";
+    // Events handed to the sending thread of a subscriber ahead of its demand
+    private static final int PREFETCH = 32;
+    // Marks the heartbeats, which are sent as comments
+    private static final RecipeChange HEARTBEAT = new RecipeChange(-1, "heartbeat", null, null);
+
+    private final AtomicReferenceArray<RecipeChange> ring;
+    private final int mask;
+    private final Duration heartbeat;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    // Sends the events, so writing to a slow client never blocks the thread that changed a recipe
+    private final Scheduler scheduler = Schedulers.newBoundedElastic(
+            Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "changes");
+    private final Counter resyncs;
+    // The last published sequence number, written after the change is in the ring buffer
+    private volatile long published = System.currentTimeMillis() * 1000;
+
+    public RecipeChangeFeed(MeterRegistry meterRegistry,
+                            @Value("${recipes.changes.buffer-size:4096}") int bufferSize,
+                            @Value("${recipes.changes.heartbeat:15s}") Duration heartbeat) {
+        // A power of two, so a sequence number is mapped to its slot with a mask
+        int capacity = Integer.highestOneBit(Math.max(2, bufferSize - 1)) << 1;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.heartbeat = heartbeat;
+        this.resyncs = meterRegistry.counter(RESYNCS_METRIC);
+        meterRegistry.gauge(SUBSCRIBERS_METRIC, subscriptions, Set::size);
+    }
+
+    /**
+     * This method publishes a created recipe.
+     *
+     * @param recipe The saved recipe
+     */
+    public void created(Recipe recipe) {
+        publish(RecipeChange.CREATED, recipe.getId(), recipe.getVersion());
+    }
+
+    /**
+     * This method publishes an updated recipe.
+     *
+     * @param recipe The saved recipe
+     */
+    public void updated(Recipe recipe) {
+        publish(RecipeChange.UPDATED, recipe.getId(), recipe.getVersion());
+    }
+
+    /**
+     * This method publishes a deleted recipe.
+     *
+     * @param id The id of the deleted recipe
+     */
+    public void deleted(long id) {
+        publish(RecipeChange.DELETED, id, null);
+    }
+
+    /**
+     * This method subscribes to the feed. Besides the changes, a comment is sent in the heartbeat interval to keep
+     * idle connections open.
+     *
+     * @param lastEventId The sequence number of the last change the subscriber received, or null to receive only
+     *                    changes from now on
+     * @return The changes as server-sent events
+     */
+    public Flux<ServerSentEvent<RecipeChange>> subscribe(Long lastEventId) {
+        Flux<RecipeChange> changes = Flux.create(sink -> {
+            Subscription subscription = new Subscription(sink, lastEventId == null ? published : lastEventId);
+            subscriptions.add(subscription);
+            sink.onRequest(n -> subscription.drain());
+            sink.onDispose(() -> subscriptions.remove(subscription));
+        }, FluxSink.OverflowStrategy.ERROR);
+        Flux<RecipeChange> heartbeats = Flux.interval(heartbeat)
+                .onBackpressureDrop()
+                .map(tick -> HEARTBEAT);
+        return Flux.merge(changes, heartbeats)
+                // The resync event is the last one
+                .takeUntil(change -> RecipeChange.RESYNC.equals(change.type()))
+                .publishOn(scheduler, PREFETCH)
+                .map(RecipeChangeFeed::toEvent);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.dispose();
+    }
+
+    /**
+     * A helper method to convert a change to a server-sent event, with the sequence number as id and the type as
+     * event name.
+     */
+    private static ServerSentEvent<RecipeChange> toEvent(RecipeChange change) {
+        if (change == HEARTBEAT) {
+            return ServerSentEvent.<RecipeChange>builder().comment("heartbeat").build();
+        }
+        return ServerSentEvent.builder(change)
+                .id(String.valueOf(change.sequence()))
+                .event(change.type())
+                .build();
+    }
+
+    /**
+     * A helper method to append a change to the ring buffer and to wake up the subscribers.
+     */
+    private void publish(String type, long id, Long version) {
+        synchronized (ring) {
+            long sequence = published + 1;
+            ring.set((int) (sequence & mask), new RecipeChange(sequence, type, id, version));
+            published = sequence;
+        }
+        subscriptions.forEach(Subscription::drain);
+    }
+
+    /**
+     * The position of a subscriber in the feed. Draining is serialized per subscriber by a work-in-progress counter,
+     * so the publishing threads and the requests of the subscriber never emit concurrently.
+     */
+    private final class Subscription {
+        private final FluxSink<RecipeChange> sink;
+        private final AtomicInteger wip = new AtomicInteger();
+        private long cursor;
+        private boolean done;
+
+        private Subscription(FluxSink<RecipeChange> sink, long cursor) {
+            this.sink = sink;
+            this.cursor = cursor;
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (!done && sink.requestedFromDownstream() > 0) {
+                    long latest = published;
+                    if (cursor == latest) {
+                        break;
+                    }
+                    RecipeChange change = cursor < latest ? ring.get((int) ((cursor + 1) & mask)) : null;
+                    if (change == null || change.sequence() != cursor + 1) {
+                        // Overwritten before the subscriber read it, or resumed with an id not handed out here
+                        resync(latest);
+                    } else {
+                        cursor++;
+                        sink.next(change);
+                    }
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        private void resync(long latest) {
+            if (done) {
+                return;
+            }
+            done = true;
+            resyncs.increment();
+            sink.next(new RecipeChange(latest, RecipeChange.RESYNC, null, null));
+            sink.complete();
+        }
+    }
+}
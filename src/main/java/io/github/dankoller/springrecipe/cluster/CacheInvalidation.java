@@ -0,0 +1,14 @@
+package io.github.dankoller.springrecipe.cluster;
+
+/**
+ * This class is a row of the cache invalidation outbox.
+ *
+ * @param id     The id of the row, increasing in insertion order
+ * @param cache  The cache holding the changed entity, {@link CacheInvalidationOutbox#RECIPES} or
+ *               {@link CacheInvalidationOutbox#USERS}
+ * @param key    The key of the changed entity (the recipe id or the user email)
+ * @param type   The type of the change (see {@link io.github.dankoller.springrecipe.changes.RecipeChange})
+ * @param origin The id of the instance that made the change
+ */
+public record CacheInvalidation(long id, String cache, String key, String type, String origin) {
+}
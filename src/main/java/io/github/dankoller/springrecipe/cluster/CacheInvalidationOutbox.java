@@ -0,0 +1,111 @@
+package io.github.dankoller.springrecipe.cluster;
+
+import io.github.dankoller.springrecipe.entity.Recipe;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * This class writes and reads the cache invalidation outbox. The writes use the JDBC connection of the surrounding
+ * transaction, so a change and its invalidation are committed together. Rows are inserted with plain JDBC because
+ * the identity column would keep Hibernate from batching them.
+ */
+@Component
+public class CacheInvalidationOutbox {
+    public static final String RECIPES = "recipes";
+    public static final String USERS = "users";
+    private static final String INSERT = "insert into cache_invalidation "
+            + "(cache_name, entity_key, change_type, origin, created_at) values (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String nodeId;
+
+    public CacheInvalidationOutbox(JdbcTemplate jdbcTemplate,
+                                   @Value("${recipes.cluster.node-id:}") String nodeId) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.nodeId = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+    }
+
+    /**
+     * This method returns the id of this instance, which is written as origin of its invalidations.
+     *
+     * @return The id of this instance
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * This method records the change of a recipe. It has to be called within the transaction of the change.
+     *
+     * @param id   The id of the recipe
+     * @param type The type of the change
+     */
+    public void recipeChanged(long id, String type) {
+        jdbcTemplate.update(INSERT, RECIPES, String.valueOf(id), type, nodeId, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    /**
+     * This method records the change of many recipes in a single batch. It has to be called within the transaction
+     * of the change.
+     *
+     * @param recipes The changed recipes
+     * @param type    The type of the change
+     */
+    public void recipesChanged(List<Recipe> recipes, String type) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT, recipes.stream()
+                .map(recipe -> new Object[]{RECIPES, String.valueOf(recipe.getId()), type, nodeId, now})
+                .toList());
+    }
+
+    /**
+     * This method records the change of a user. It has to be called within the transaction of the change.
+     *
+     * @param email The email of the user
+     * @param type  The type of the change
+     */
+    public void userChanged(String email, String type) {
+        jdbcTemplate.update(INSERT, USERS, email, type, nodeId, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    /**
+     * This method reads the invalidations following the given id.
+     *
+     * @param id    The id to read after
+     * @param limit The maximum number of invalidations to read
+     * @return The invalidations ordered by id
+     */
+    public List<CacheInvalidation> readAfter(long id, int limit) {
+        return jdbcTemplate.query("select id, cache_name, entity_key, change_type, origin from cache_invalidation "
+                        + "where id > ? order by id limit ?",
+                (resultSet, rowNumber) -> new CacheInvalidation(resultSet.getLong(1), resultSet.getString(2),
+                        resultSet.getString(3), resultSet.getString(4), resultSet.getString(5)),
+                id, limit);
+    }
+
+    /**
+     * This method returns the id of the latest invalidation.
+     *
+     * @return The id of the latest invalidation, or 0 if there is none
+     */
+    public long lastId() {
+        Long id = jdbcTemplate.queryForObject("select max(id) from cache_invalidation", Long.class);
+        return id == null ? 0 : id;
+    }
+
+    /**
+     * This method deletes the invalidations written before the given time.
+     *
+     * @param time The time to delete before
+     * @return The number of deleted invalidations
+     */
+    public int deleteBefore(LocalDateTime time) {
+        return jdbcTemplate.update("delete from cache_invalidation where created_at < ?", Timestamp.valueOf(time));
+    }
+}
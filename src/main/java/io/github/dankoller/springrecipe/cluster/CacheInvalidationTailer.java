@@ -0,0 +1,174 @@
+package io.github.dankoller.springrecipe.cluster;
+
+import io.github.dankoller.springrecipe.auth.CachingAuthenticationProvider;
+import io.github.dankoller.springrecipe.changes.RecipeChange;
+import io.github.dankoller.springrecipe.changes.RecipeChangeFeed;
+import io.github.dankoller.springrecipe.entity.Recipe;
+import io.github.dankoller.springrecipe.persistence.RecipeRepository;
+import io.github.dankoller.springrecipe.render.RenderedRecipeCache;
+import io.github.dankoller.springrecipe.search.RecipeIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeSet;
+
+import static io.github.dankoller.springrecipe.config.CacheConfiguration.RECIPES_CACHE;
+
+/**
+ * This class tails the cache invalidation outbox, so the caches and in-memory indexes of this instance follow the
+ * recipes and users changed by other instances sharing the database. Changes made by this instance itself are
+ * skipped, they were applied when they were made. The lag is bounded by the poll interval.
+ * <p>
+ * Identity values are handed out when a row is inserted, not when it is committed, so a row may become visible after
+ * rows with a larger id. The tailer therefore only advances its position over ids it has seen and waits for a
+ * missing id up to the gap timeout (ids of rolled back transactions never show up).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(value = "recipes.cluster.enabled", matchIfMissing = true)
+@SuppressWarnings("unused")
+public class CacheInvalidationTailer {
+    public static final String APPLIED_METRIC = "recipes.cluster.invalidations";
+
+    @Autowired
+    private CacheInvalidationOutbox outbox;
+    @Autowired
+    private RecipeRepository recipeRepository;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private RenderedRecipeCache renderedRecipeCache;
+    @Autowired
+    private List<RecipeIndex> recipeIndexes;
+    @Autowired
+    private RecipeChangeFeed recipeChangeFeed;
+    @Autowired
+    private CachingAuthenticationProvider cachingAuthenticationProvider;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Value("${recipes.cluster.batch-size:500}")
+    private int batchSize;
+    @Value("${recipes.cluster.gap-timeout:10s}")
+    private Duration gapTimeout;
+    @Value("${recipes.cluster.retention:1h}")
+    private Duration retention;
+
+    // All ids up to the position were applied (or given up on), ids above it that were applied already
+    private long position;
+    private final NavigableSet<Long> applied = new TreeSet<>();
+    private long gapSince = -1;
+    private Counter invalidations;
+
+    /**
+     * This method starts tailing at the latest invalidation, the caches and indexes of a starting instance are
+     * loaded from the database anyway.
+     */
+    @PostConstruct
+    public void start() {
+        position = outbox.lastId();
+        invalidations = meterRegistry.counter(APPLIED_METRIC);
+    }
+
+    /**
+     * This method applies the invalidations written since the last poll.
+     */
+    // Scheduled takes milliseconds or ISO-8601 only, so the interval is converted like the other durations
+    @Scheduled(fixedDelayString = "#{T(org.springframework.boot.convert.DurationStyle)"
+            + ".detectAndParse('${recipes.cluster.poll-interval:1s}').toMillis()}")
+    public synchronized void poll() {
+        List<CacheInvalidation> batch;
+        do {
+            batch = outbox.readAfter(position, batchSize);
+            for (CacheInvalidation invalidation : batch) {
+                if (applied.add(invalidation.id()) && !outbox.getNodeId().equals(invalidation.origin())) {
+                    apply(invalidation);
+                    invalidations.increment();
+                }
+            }
+        } while (advance() && batch.size() == batchSize);
+    }
+
+    /**
+     * This method deletes the invalidations older than the retention period.
+     */
+    @Scheduled(fixedDelayString = "#{T(org.springframework.boot.convert.DurationStyle)"
+            + ".detectAndParse('${recipes.cluster.cleanup-interval:10m}').toMillis()}")
+    public void cleanup() {
+        int deleted = outbox.deleteBefore(LocalDateTime.now().minus(retention));
+        if (deleted > 0) {
+            log.debug("Deleted {} cache invalidations", deleted);
+        }
+    }
+
+    /**
+     * A helper method to advance the position over the applied ids. A missing id is skipped once it is missing for
+     * longer than the gap timeout.
+     *
+     * @return True if the position moved
+     */
+    private boolean advance() {
+        long start = position;
+        while (!applied.isEmpty()) {
+            if (applied.first() == position + 1) {
+                position = applied.pollFirst();
+                gapSince = -1;
+            } else if (gapSince < 0) {
+                gapSince = System.nanoTime();
+                break;
+            } else if (System.nanoTime() - gapSince > gapTimeout.toNanos()) {
+                log.warn("Skipping cache invalidations {} to {}", position + 1, applied.first() - 1);
+                position = applied.first() - 1;
+            } else {
+                break;
+            }
+        }
+        return position != start;
+    }
+
+    /**
+     * A helper method to apply an invalidation of another instance.
+     */
+    private void apply(CacheInvalidation invalidation) {
+        if (CacheInvalidationOutbox.USERS.equals(invalidation.cache())) {
+            cachingAuthenticationProvider.evict(invalidation.key());
+            return;
+        }
+        long id = Long.parseLong(invalidation.key());
+        Cache cache = cacheManager.getCache(RECIPES_CACHE);
+        if (cache != null) {
+            cache.evict(id);
+        }
+        renderedRecipeCache.evict(id);
+        // The indexes need the current state of the recipe, which may have changed again since. It's read in a
+        // read-write transaction, so it comes from the primary database even if a replica is configured.
+        Optional<Recipe> recipe = transactionTemplate.execute(status -> recipeRepository.findRecipeById(id));
+        if (recipe.isPresent()) {
+            recipeIndexes.forEach(index -> index.index(recipe.get()));
+        } else {
+            recipeIndexes.forEach(index -> index.remove(id));
+        }
+        switch (invalidation.type()) {
+            case RecipeChange.CREATED -> recipe.ifPresent(recipeChangeFeed::created);
+            case RecipeChange.UPDATED -> recipe.ifPresent(recipeChangeFeed::updated);
+            case RecipeChange.DELETED -> recipeChangeFeed.deleted(id);
+            default -> log.warn("Unknown change type {}", invalidation.type());
+        }
+    }
+}
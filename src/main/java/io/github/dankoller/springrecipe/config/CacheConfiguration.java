@@ -0,0 +1,42 @@
+package io.github.dankoller.springrecipe.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * This class enables the Spring cache abstraction. The caches themselves are Caffeine caches configured with the
+ * spring.cache.* properties; Spring Boot publishes their gets, puts, evictions and size as metrics.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfiguration {
+    /**
+     * Read-through cache of recipes by id.
+     */
+    public static final String RECIPES_CACHE = "recipes";
+
+    /**
+     * This method publishes the hit ratio of the recipe cache as the cache.hit.ratio gauge.
+     *
+     * @param cacheManager The cache manager holding the recipe cache
+     * @return The {@link MeterBinder} registering the gauge
+     */
+    @Bean
+    public MeterBinder recipeCacheHitRatio(CacheManager cacheManager) {
+        return registry -> {
+            if (cacheManager.getCache(RECIPES_CACHE) instanceof CaffeineCache caffeineCache) {
+                Cache<Object, Object> cache = caffeineCache.getNativeCache();
+                Gauge.builder("cache.hit.ratio", cache, c -> c.stats().hitRate())
+                        .tag("cache", RECIPES_CACHE)
+                        .description("The ratio of cache requests which were hits")
+                        .register(registry);
+            }
+        };
+    }
+}
@@ -0,0 +1,157 @@
+package io.github.dankoller.springrecipe.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.github.dankoller.springrecipe.persistence.ReadWriteRoutingDataSource;
+import io.github.dankoller.springrecipe.persistence.ReplicaMonitor;
+import io.github.dankoller.springrecipe.sql.SqlProfilingListener;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * This class defines the data sources. The primary database is configured with the spring.datasource.* properties.
+ * If recipes.datasource.replica.url is set, read-only transactions (recipe queries, user lookups of the
+ * authentication) are routed to that replica while it's up and doesn't lag behind, all other statements go to the
+ * primary database.
+ * <p>
+ * The data source used by JPA and JDBC fetches its physical connection with the first statement, so a transaction
+ * answered from the caches doesn't take a connection from the pool, and a routed transaction is routed with its
+ * read-only flag already set. Unless recipes.sql.profiling.enabled is false, it's wrapped in a proxy passing every
+ * statement to the SqlProfilingListener. The result sets are only proxied to count their rows if
+ * recipes.sql.profiling.row-counts is true.
+ */
+@Configuration
+public class DataSourceConfiguration {
+    /**
+     * This method creates the connection pool of the primary database.
+     *
+     * @param properties The spring.datasource.* properties
+     * @return The connection pool, configured by the spring.datasource.hikari.* properties
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    /**
+     * This method creates the data source used by the application, routing to the replica if one is configured.
+     *
+     * @param primary              The connection pool of the primary database
+     * @param replicaMonitor       The monitor of the replica, if one is configured
+     * @param sqlProfilingListener The listener profiling the statements, if profiling is enabled
+     * @param rowCounts            Whether the rows read from result sets are counted
+     * @return The data source
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 ObjectProvider<ReplicaMonitor> replicaMonitor,
+                                 ObjectProvider<SqlProfilingListener> sqlProfilingListener,
+                                 @Value("${recipes.sql.profiling.row-counts:false}") boolean rowCounts) {
+        DataSource dataSource;
+        ReplicaMonitor monitor = replicaMonitor.getIfAvailable();
+        if (monitor == null) {
+            dataSource = new LazyConnectionDataSourceProxy(primary);
+        } else {
+            ReadWriteRoutingDataSource routingDataSource =
+                    new ReadWriteRoutingDataSource(primary, monitor);
+            routingDataSource.afterPropertiesSet();
+            dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        }
+        SqlProfilingListener listener = sqlProfilingListener.getIfAvailable();
+        if (listener == null) {
+            return dataSource;
+        }
+        ProxyDataSourceBuilder builder = ProxyDataSourceBuilder.create(dataSource)
+                .name("recipes")
+                .listener(listener);
+        if (rowCounts) {
+            // Result sets are proxied as well, so the listener sees the rows being read
+            builder.proxyResultSet().methodListener(listener);
+        }
+        return builder.build();
+    }
+
+    /**
+     * This class defines the replica database, if recipes.datasource.replica.url is set.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty("recipes.datasource.replica.url")
+    static class ReplicaConfiguration {
+        /**
+         * This method creates the connection pool of the replica database.
+         *
+         * @param properties The spring.datasource.* properties, the replica uses the same driver
+         * @param url        The JDBC URL of the replica
+         * @param username   The username for the replica
+         * @param password   The password for the replica
+         * @return The connection pool, configured by the recipes.datasource.replica.hikari.* properties
+         */
+        @Bean
+        @ConfigurationProperties("recipes.datasource.replica.hikari")
+        public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                                  @Value("${recipes.datasource.replica.url}") String url,
+                                                  @Value("${recipes.datasource.replica.username:}") String username,
+                                                  @Value("${recipes.datasource.replica.password:}") String password) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(url)
+                    .username(username)
+                    .password(password)
+                    .build();
+            dataSource.setPoolName("replica");
+            dataSource.setReadOnly(true);
+            return dataSource;
+        }
+
+        /**
+         * This method creates the monitor deciding whether reads are routed to the replica.
+         *
+         * @param primary The connection pool of the primary database
+         * @param replica The connection pool of the replica database
+         * @param maxLag  The lag beyond which reads fall back to the primary database
+         * @return The monitor, checking the replica in the check interval
+         */
+        @Bean
+        public ReplicaMonitor replicaMonitor(@Qualifier("primaryDataSource") DataSource primary,
+                                             @Qualifier("replicaDataSource") DataSource replica,
+                                             @Value("${recipes.datasource.replica.max-lag:5s}") Duration maxLag) {
+            return new ReplicaMonitor(primary, replica, maxLag);
+        }
+
+        /**
+         * This method publishes the routing decisions of the data source as the recipes.datasource.routing counters.
+         *
+         * @param dataSource The data source used by the application, routing to the replica
+         * @return The {@link MeterBinder} registering the counters
+         */
+        @Bean
+        public MeterBinder dataSourceRoutingMetrics(DataSource dataSource) {
+            return registry -> {
+                try {
+                    dataSource.unwrap(ReadWriteRoutingDataSource.class).bindTo(registry);
+                } catch (SQLException e) {
+                    throw new IllegalStateException("The data source doesn't route to the replica", e);
+                }
+            };
+        }
+    }
+}
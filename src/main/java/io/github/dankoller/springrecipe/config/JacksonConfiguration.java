@@ -0,0 +1,26 @@
+package io.github.dankoller.springrecipe.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * This class tunes the ObjectMapper Spring Boot uses for the REST API (and the rendered recipe cache). Module beans
+ * are registered with the ObjectMapper automatically.
+ */
+@Configuration
+public class JacksonConfiguration {
+    /**
+     * This method registers the Blackbird module, which replaces the reflective getter and setter calls of Jackson
+     * with generated lambdas. It is enabled by default and can be disabled with recipes.jackson.blackbird=false.
+     *
+     * @return The {@link BlackbirdModule}
+     */
+    @Bean
+    @ConditionalOnProperty(name = "recipes.jackson.blackbird", havingValue = "true", matchIfMissing = true)
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
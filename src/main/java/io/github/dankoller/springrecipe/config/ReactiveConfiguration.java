@@ -0,0 +1,64 @@
+package io.github.dankoller.springrecipe.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * This class configures the reactive variant of the API, enabled with the reactive profile. The JPA repositories
+ * block, so the reactive services run them on a dedicated scheduler instead of the event loop. The scheduler has as
+ * many threads as the connection pool has connections, so it bounds the concurrency towards the database just like
+ * the pool does for the servlet stack. Exports hold their thread for as long as the client takes, so they run on a
+ * scheduler of their own.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveConfiguration {
+    /**
+     * The maximum number of database tasks waiting for a thread, beyond it tasks are rejected.
+     */
+    private static final int MAX_QUEUED_TASKS = 10_000;
+    /**
+     * The maximum number of exports waiting for a thread, beyond it exports are rejected.
+     */
+    private static final int MAX_QUEUED_EXPORTS = 100;
+
+    /**
+     * This method creates the scheduler running the blocking database work of the reactive services.
+     *
+     * @param poolSize The maximum size of the connection pool
+     * @return The {@link Scheduler} to offload blocking calls to
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler jdbcScheduler(@Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize) {
+        return Schedulers.newBoundedElastic(poolSize, MAX_QUEUED_TASKS, "jdbc");
+    }
+
+    /**
+     * This method creates the scheduler running the exports of the reactive service. An export blocks its thread and
+     * holds a connection until a slow client consumed it, so the exports are limited to a few threads of their own
+     * and never take the threads of the JDBC scheduler.
+     *
+     * @param maxConcurrent The maximum number of exports running at once
+     * @return The {@link Scheduler} to run the exports on
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler exportScheduler(@Value("${recipes.export.max-concurrent:2}") int maxConcurrent) {
+        return Schedulers.newBoundedElastic(maxConcurrent, MAX_QUEUED_EXPORTS, "export");
+    }
+
+    /**
+     * This method selects Netty as the server of the reactive profile. Spring MVC keeps Tomcat on the classpath, and
+     * Spring Boot prefers Tomcat over Netty for reactive applications too unless a server factory is defined.
+     *
+     * @return The {@link NettyReactiveWebServerFactory}
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
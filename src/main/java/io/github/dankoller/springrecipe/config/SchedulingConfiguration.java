@@ -0,0 +1,13 @@
+package io.github.dankoller.springrecipe.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * This class enables the scheduled tasks, which tail and clean up the cache invalidation outbox of instances sharing
+ * the database (disabled with recipes.cluster.enabled=false) and check the replica database, if one is configured.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfiguration {
+}
@@ -0,0 +1,62 @@
+package io.github.dankoller.springrecipe.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class runs the servlet requests (and with them the service layer) and the asynchronous request processing on
+ * virtual threads instead of Tomcat's fixed platform thread pool. It is enabled with recipes.threads.virtual=true and
+ * requires Java 21; the concurrency towards the database is bounded by the connection pool.
+ */
+@Configuration
+@ConditionalOnProperty(name = "recipes.threads.virtual", havingValue = "true")
+public class VirtualThreadConfiguration {
+    private final ExecutorService executor = newVirtualThreadPerTaskExecutor();
+
+    /**
+     * This method makes Tomcat run every request on a new virtual thread.
+     *
+     * @return The customizer replacing the executor of Tomcat's protocol handler
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    /**
+     * This method replaces the application task executor used for asynchronous requests (e.g. streamed responses)
+     * with one running on virtual threads.
+     *
+     * @return The virtual thread task executor
+     */
+    @Bean(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * A helper method to create a virtual thread per task executor. It is looked up reflectively, so the application
+     * still compiles for and runs on Java 17 as long as virtual threads are disabled.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("recipes.threads.virtual=true requires Java 21 or newer", e);
+        }
+    }
+}
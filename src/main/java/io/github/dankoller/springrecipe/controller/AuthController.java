@@ -0,0 +1,43 @@
+package io.github.dankoller.springrecipe.controller;
+
+import io.github.dankoller.springrecipe.request.LoginRequest;
+import io.github.dankoller.springrecipe.request.RefreshRequest;
+import io.github.dankoller.springrecipe.service.AuthService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+
+@RestController
+@Profile("!reactive")
+@SuppressWarnings("unused")
+public class AuthController {
+    @Autowired
+    private AuthService authService;
+
+    /**
+     * This endpoint is used to log in and get an access token for the following requests.
+     *
+     * @param request The request body containing the user's credentials
+     * @return A response entity containing the tokens
+     */
+    @PostMapping("/api/login")
+    public ResponseEntity<?> login(@RequestBody @Valid LoginRequest request) {
+        return authService.login(request);
+    }
+
+    /**
+     * This endpoint is used to get new tokens before the access token expires.
+     *
+     * @param request The request body containing the refresh token
+     * @return A response entity containing the new tokens
+     */
+    @PostMapping("/api/token/refresh")
+    public ResponseEntity<?> refresh(@RequestBody @Valid RefreshRequest request) {
+        return authService.refresh(request);
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.dankoller.springrecipe.controller;
+
+import io.github.dankoller.springrecipe.request.LoginRequest;
+import io.github.dankoller.springrecipe.request.RefreshRequest;
+import io.github.dankoller.springrecipe.service.ReactiveAuthService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+
+/**
+ * The WebFlux variant of {@link AuthController}, active with the reactive profile.
+ */
+@RestController
+@Profile("reactive")
+@SuppressWarnings("unused")
+public class ReactiveAuthController {
+    @Autowired
+    private ReactiveAuthService reactiveAuthService;
+
+    /**
+     * This endpoint is used to log in and get an access token for the following requests.
+     *
+     * @param request The request body containing the user's credentials
+     * @return A response entity containing the tokens
+     */
+    @PostMapping("/api/login")
+    public Mono<ResponseEntity<?>> login(@RequestBody @Valid LoginRequest request) {
+        return reactiveAuthService.login(request);
+    }
+
+    /**
+     * This endpoint is used to get new tokens before the access token expires.
+     *
+     * @param request The request body containing the refresh token
+     * @return A response entity containing the new tokens
+     */
+    @PostMapping("/api/token/refresh")
+    public Mono<ResponseEntity<?>> refresh(@RequestBody @Valid RefreshRequest request) {
+        return reactiveAuthService.refresh(request);
+    }
+}
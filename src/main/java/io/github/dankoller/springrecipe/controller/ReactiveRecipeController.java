@@ -0,0 +1,166 @@
+package io.github.dankoller.springrecipe.controller;
+
+import io.github.dankoller.springrecipe.changes.RecipeChange;
+import io.github.dankoller.springrecipe.entity.user.UserDetailsImpl;
+import io.github.dankoller.springrecipe.request.RecipeRequest;
+import io.github.dankoller.springrecipe.service.ReactiveRecipeService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * The WebFlux variant of {@link RecipeController}, active with the reactive profile.
+ */
+@RestController
+@Profile("reactive")
+@SuppressWarnings("unused")
+public class ReactiveRecipeController {
+    @Autowired
+    private ReactiveRecipeService reactiveRecipeService;
+
+    /**
+     * This endpoint is used to create a new recipe.
+     *
+     * @param user          The user that is creating the recipe
+     * @param recipeRequest The recipe to be created
+     * @return A response entity with the recipe that was created
+     */
+    @PostMapping("/api/recipe/new")
+    public Mono<ResponseEntity<?>> postRecipe(@AuthenticationPrincipal UserDetailsImpl user,
+                                              @RequestBody RecipeRequest recipeRequest) {
+        return reactiveRecipeService.postRecipe(user.getUsername(), recipeRequest);
+    }
+
+    /**
+     * This endpoint is used to import many recipes at once from newline-delimited JSON.
+     *
+     * @param user  The user that is importing the recipes
+     * @param lines The lines of the request body, one recipe per line
+     * @return A response entity with the import report
+     */
+    @PostMapping(value = "/api/recipe/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<ResponseEntity<?>> importRecipes(@AuthenticationPrincipal UserDetailsImpl user,
+                                                 @RequestBody Flux<String> lines) {
+        return reactiveRecipeService.importRecipes(user.getUsername(), lines);
+    }
+
+    /**
+     * This endpoint is used to get a recipe by its id.
+     *
+     * @param id       The id of the recipe to be retrieved
+     * @param exchange The exchange containing the conditional headers
+     * @return A response entity with the recipe that was retrieved
+     */
+    @GetMapping("/api/recipe/{id}")
+    public Mono<ResponseEntity<byte[]>> getRecipe(@PathVariable int id, ServerWebExchange exchange) {
+        return reactiveRecipeService.getRecipe(id, exchange);
+    }
+
+    /**
+     * This endpoint is used to delete a specific recipe.
+     *
+     * @param user The user that is deleting the recipe
+     * @param id   The id of the recipe to be deleted
+     * @return A response entity with the status of the deletion
+     */
+    @DeleteMapping("/api/recipe/{id}")
+    public Mono<ResponseEntity<?>> deleteRecipe(@AuthenticationPrincipal UserDetailsImpl user,
+                                                @PathVariable int id) {
+        return reactiveRecipeService.deleteRecipe(user.getUsername(), id);
+    }
+
+    /**
+     * This endpoint is used to update a specific recipe.
+     *
+     * @param user          The user that is updating the recipe
+     * @param id            The id of the recipe to be updated
+     * @param recipeRequest The recipe to be updated
+     * @return A response entity with the status of the update
+     */
+    @PutMapping("/api/recipe/{id}")
+    public Mono<ResponseEntity<?>> updateRecipe(@AuthenticationPrincipal UserDetailsImpl user,
+                                                @PathVariable int id,
+                                                @RequestBody RecipeRequest recipeRequest) {
+        return reactiveRecipeService.updateRecipe(user.getUsername(), id, recipeRequest);
+    }
+
+    /**
+     * This endpoint is used to get all recipes queried by category, name or ingredients. If any of the paging
+     * parameters is given, only a single page of recipes is returned.
+     *
+     * @param category    The category of the recipe to be retrieved
+     * @param name        The name of the recipe to be retrieved
+     * @param ingredients The comma-separated ingredients the recipes should use
+     * @param match       How many of the ingredients the recipes have to use: all (default), any or a number
+     * @param page        The zero-based number of the page to be retrieved
+     * @param size        The number of recipes per page
+     * @param after       The cursor of the previous page (category queries only)
+     * @param exchange    The exchange containing the conditional headers
+     * @return A response entity with the recipe that was retrieved
+     */
+    @GetMapping("/api/recipe/search")
+    public Mono<ResponseEntity<?>> getRecipeByParam(@RequestParam(required = false) String category,
+                                                    @RequestParam(required = false) String name,
+                                                    @RequestParam(required = false) String ingredients,
+                                                    @RequestParam(required = false) String match,
+                                                    @RequestParam(required = false) Integer page,
+                                                    @RequestParam(required = false) Integer size,
+                                                    @RequestParam(required = false) String after,
+                                                    ServerWebExchange exchange) {
+        return reactiveRecipeService.getRecipeByParam(category, name, ingredients, match, page, size, after,
+                exchange);
+    }
+
+    /**
+     * This endpoint is used to list the categories with the number of their recipes.
+     *
+     * @param top The maximum number of categories to be listed
+     * @return A response entity with the categories, the ones with the most recipes first
+     */
+    @GetMapping("/api/recipe/categories")
+    public Mono<ResponseEntity<?>> getCategories(@RequestParam(required = false) Integer top) {
+        return reactiveRecipeService.getCategories(top);
+    }
+
+    /**
+     * This endpoint is used to follow the created, updated and deleted recipes as server-sent events. A client
+     * reconnecting with the Last-Event-ID header receives the changes it missed, or a resync event if they aren't
+     * buffered anymore.
+     *
+     * @param lastEventId The id of the last event the client received
+     * @return The stream of changes
+     */
+    @GetMapping(value = "/api/recipe/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<RecipeChange>> getChanges(
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return reactiveRecipeService.getChanges(lastEventId);
+    }
+
+    /**
+     * This endpoint is used to export all recipes as newline-delimited JSON, optionally filtered by category and
+     * date range.
+     *
+     * @param category The category of the recipes to be exported
+     * @param from     The earliest date of the recipes to be exported (inclusive)
+     * @param to       The latest date of the recipes to be exported (exclusive)
+     * @return A response entity streaming the recipes
+     */
+    @GetMapping(value = "/api/recipe/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<ResponseEntity<Flux<DataBuffer>>> exportRecipes(
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return reactiveRecipeService.exportRecipes(category, from, to);
+    }
+}
@@ -0,0 +1,35 @@
+package io.github.dankoller.springrecipe.controller;
+
+import io.github.dankoller.springrecipe.request.RegistrationRequest;
+import io.github.dankoller.springrecipe.service.ReactiveUserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+
+/**
+ * The WebFlux variant of {@link UserController}, active with the reactive profile.
+ */
+@RestController
+@Profile("reactive")
+@SuppressWarnings("unused")
+public class ReactiveUserController {
+    @Autowired
+    private ReactiveUserService reactiveUserService;
+
+    /**
+     * This method handles the registration of a new user.
+     *
+     * @param request The request body containing the user's information
+     * @return A response entity containing the status code
+     */
+    @PostMapping("/api/register")
+    public Mono<ResponseEntity<?>> register(@RequestBody @Valid RegistrationRequest request) {
+        return reactiveUserService.register(request);
+    }
+}
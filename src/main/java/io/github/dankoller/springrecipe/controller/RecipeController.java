@@ -1,19 +1,38 @@
 package io.github.dankoller.springrecipe.controller;
 
-import io.github.dankoller.springrecipe.entity.Recipe;
+import io.github.dankoller.springrecipe.changes.RecipeChange;
 import io.github.dankoller.springrecipe.entity.user.UserDetailsImpl;
+import io.github.dankoller.springrecipe.request.ConditionalRequest;
 import io.github.dankoller.springrecipe.request.RecipeRequest;
+import io.github.dankoller.springrecipe.service.RecipeExportService;
+import io.github.dankoller.springrecipe.service.RecipeImportService;
 import io.github.dankoller.springrecipe.service.RecipeService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
 
 @RestController
+@Profile("!reactive")
 @SuppressWarnings("unused")
 public class RecipeController {
     @Autowired
     private RecipeService recipeService;
+    @Autowired
+    private RecipeImportService recipeImportService;
+    @Autowired
+    private RecipeExportService recipeExportService;
 
     /**
      * This endpoint is used to create a new recipe.
@@ -28,15 +47,30 @@ public class RecipeController {
         return recipeService.postRecipe(user.getUsername(), recipeRequest);
     }
 
+    /**
+     * This endpoint is used to import many recipes at once from newline-delimited JSON.
+     *
+     * @param user The user that is importing the recipes
+     * @param body The request body, one recipe per line
+     * @return A response entity with the import report
+     * @throws IOException If the request body can't be read
+     */
+    @PostMapping(value = "/api/recipe/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<?> importRecipes(@AuthenticationPrincipal UserDetailsImpl user,
+                                           InputStream body) throws IOException {
+        return recipeImportService.importRecipes(user.getUsername(), body);
+    }
+
     /**
      * This endpoint is used to get a recipe by its id.
      *
-     * @param id The id of the recipe to be retrieved
+     * @param id      The id of the recipe to be retrieved
+     * @param request The request containing the conditional headers
      * @return A response entity with the recipe that was retrieved
      */
     @GetMapping("/api/recipe/{id}")
-    public ResponseEntity<Recipe> getRecipe(@PathVariable int id) {
-        return recipeService.getRecipe(id);
+    public ResponseEntity<byte[]> getRecipe(@PathVariable int id, WebRequest request) {
+        return recipeService.getRecipe(id, ConditionalRequest.of(request));
     }
 
     /**
@@ -68,15 +102,71 @@ public class RecipeController {
     }
 
     /**
-     * This endpoint is used to get all recipes queried by category or name.
+     * This endpoint is used to get all recipes queried by category, name or ingredients. If any of the paging
+     * parameters is given, only a single page of recipes is returned.
      *
-     * @param category The category of the recipe to be retrieved
-     * @param name     The name of the recipe to be retrieved
+     * @param category    The category of the recipe to be retrieved
+     * @param name        The name of the recipe to be retrieved
+     * @param ingredients The comma-separated ingredients the recipes should use
+     * @param match       How many of the ingredients the recipes have to use: all (default), any or a number
+     * @param page        The zero-based number of the page to be retrieved
+     * @param size        The number of recipes per page
+     * @param after       The cursor of the previous page (category queries only)
+     * @param request     The request containing the conditional headers
      * @return A response entity with the recipe that was retrieved
      */
     @GetMapping("/api/recipe/search")
     public ResponseEntity<?> getRecipeByParam(@RequestParam(required = false) String category,
-                                              @RequestParam(required = false) String name) {
-        return recipeService.getRecipeByParam(category, name);
+                                              @RequestParam(required = false) String name,
+                                              @RequestParam(required = false) String ingredients,
+                                              @RequestParam(required = false) String match,
+                                              @RequestParam(required = false) Integer page,
+                                              @RequestParam(required = false) Integer size,
+                                              @RequestParam(required = false) String after,
+                                              WebRequest request) {
+        return recipeService.getRecipeByParam(category, name, ingredients, match, page, size, after,
+                ConditionalRequest.of(request));
+    }
+
+    /**
+     * This endpoint is used to list the categories with the number of their recipes.
+     *
+     * @param top The maximum number of categories to be listed
+     * @return A response entity with the categories, the ones with the most recipes first
+     */
+    @GetMapping("/api/recipe/categories")
+    public ResponseEntity<?> getCategories(@RequestParam(required = false) Integer top) {
+        return recipeService.getCategories(top);
+    }
+
+    /**
+     * This endpoint is used to follow the created, updated and deleted recipes as server-sent events. A client
+     * reconnecting with the Last-Event-ID header receives the changes it missed, or a resync event if they aren't
+     * buffered anymore.
+     *
+     * @param lastEventId The id of the last event the client received
+     * @return The stream of changes
+     */
+    @GetMapping(value = "/api/recipe/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<RecipeChange>> getChanges(
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return recipeService.getChanges(lastEventId);
+    }
+
+    /**
+     * This endpoint is used to export all recipes as newline-delimited JSON, optionally filtered by category and
+     * date range.
+     *
+     * @param category The category of the recipes to be exported
+     * @param from     The earliest date of the recipes to be exported (inclusive)
+     * @param to       The latest date of the recipes to be exported (exclusive)
+     * @return A response entity streaming the recipes
+     */
+    @GetMapping(value = "/api/recipe/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportRecipes(
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return recipeExportService.exportRecipes(category, from, to);
     }
 }
@@ -3,14 +3,17 @@ package io.github.dankoller.springrecipe.controller;
 import io.github.dankoller.springrecipe.request.RegistrationRequest;
 import io.github.dankoller.springrecipe.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.Valid;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
+@Profile("!reactive")
 @SuppressWarnings("unused")
 public class UserController {
     @Autowired
@@ -20,10 +23,10 @@ public class UserController {
      * This method handles the registration of a new user.
      *
      * @param request The request body containing the user's information
-     * @return A response entity containing the status code
+     * @return A future of the response entity containing the status code, completed once the password is hashed
      */
     @PostMapping("/api/register")
-    public ResponseEntity<?> register(@RequestBody @Valid RegistrationRequest request) {
+    public CompletableFuture<ResponseEntity<?>> register(@RequestBody @Valid RegistrationRequest request) {
         return userService.register(request);
     }
 }
@@ -2,25 +2,39 @@ package io.github.dankoller.springrecipe.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.github.dankoller.springrecipe.entity.user.User;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * This class represents a recipe. It is also used as response object for the REST API.
  */
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_recipe_category_key_date", columnList = "category_key, date DESC"),
+        @Index(name = "idx_recipe_author", columnList = "author_id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 public class Recipe {
+    // Pooled sequence, so Hibernate can batch inserts and needs one sequence call per 50 recipes
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "recipe_seq")
+    @SequenceGenerator(name = "recipe_seq", sequenceName = "recipe_seq", allocationSize = 50)
     @Column
     @JsonIgnore
     private long id;
@@ -28,25 +42,83 @@ public class Recipe {
     private String name;
     @Column
     private String category;
+    // Lower-cased copy of the category, so case-insensitive category queries can use an index
+    @Column(name = "category_key")
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    private String categoryKey;
     @Column
     private LocalDateTime date;
+    @Column(name = "last_modified")
+    private LocalDateTime lastModified;
+    // Incremented on every update, used for optimistic locking and as ETag
+    @Version
     @Column
-    private String description;
-    @Column
-    private String[] ingredients;
+    @JsonIgnore
+    private long version;
     @Column
-    private String[] directions;
+    private String description;
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "recipe_ingredient",
+            joinColumns = @JoinColumn(name = "recipe_id"),
+            indexes = @Index(name = "idx_recipe_ingredient", columnList = "ingredient"))
+    @OrderColumn(name = "ingredient_order")
+    @Column(name = "ingredient")
+    @Fetch(FetchMode.SELECT)
+    @BatchSize(size = 50)
+    private List<String> ingredients = new ArrayList<>();
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "recipe_direction", joinColumns = @JoinColumn(name = "recipe_id"))
+    @OrderColumn(name = "direction_order")
+    @Column(name = "direction", length = 2000)
+    @Fetch(FetchMode.SELECT)
+    @BatchSize(size = 50)
+    private List<String> directions = new ArrayList<>();
+    // Lazy, so reading recipes never loads their author; ownership is checked in the queries instead
     @JsonIgnore
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private User author;
 
     public Recipe(String name, String category, LocalDateTime date, String description, String[] ingredients, String[] directions, User author) {
         this.name = name;
-        this.category = category;
+        setCategory(category);
         this.date = date;
+        this.lastModified = date;
         this.description = description;
-        this.ingredients = ingredients;
-        this.directions = directions;
+        setIngredients(ingredients);
+        setDirections(directions);
         this.author = author;
     }
+
+    public void setCategory(String category) {
+        this.category = category;
+        this.categoryKey = toCategoryKey(category);
+    }
+
+    public void setIngredients(String[] ingredients) {
+        replaceElements(this.ingredients, ingredients);
+    }
+
+    public void setDirections(String[] directions) {
+        replaceElements(this.directions, directions);
+    }
+
+    /**
+     * A helper method to replace the elements of a collection in place. On a managed recipe, Hibernate then only
+     * writes the positions that changed instead of deleting and inserting the whole collection.
+     */
+    private static void replaceElements(List<String> elements, String[] replacement) {
+        elements.clear();
+        elements.addAll(Arrays.asList(replacement));
+    }
+
+    /**
+     * This method normalizes a category the same way it is stored in the indexed category_key column.
+     *
+     * @param category The category to normalize
+     * @return The normalized category
+     */
+    public static String toCategoryKey(String category) {
+        return category == null ? null : category.toLowerCase(Locale.ROOT);
+    }
 }
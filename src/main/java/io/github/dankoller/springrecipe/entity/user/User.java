@@ -12,6 +12,7 @@ import javax.validation.constraints.NotEmpty;
  * This class represents a user. It is used for authentication and authorization.
  */
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_user_email", columnNames = "email"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -21,6 +21,13 @@ public class UserDetailsImpl implements UserDetails {
         this.authorities = List.of(() -> "ROLE_USER");
     }
 
+    // Users authenticated by a token, their password isn't known (nor needed) then
+    public UserDetailsImpl(String email) {
+        this.email = email;
+        this.password = null;
+        this.authorities = List.of(() -> "ROLE_USER");
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
@@ -2,20 +2,32 @@ package io.github.dankoller.springrecipe.entity.user;
 
 import io.github.dankoller.springrecipe.persistence.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * This class implements the UserDetailsService interface and is used by Spring Security.
  */
 @Service
 @SuppressWarnings("unused")
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
     @Autowired
     private UserRepository userRepository;
 
+    /**
+     * This method loads a user for the authentication, in a read-only transaction (i.e. from the replica database,
+     * if one is configured).
+     *
+     * @param email The email of the user
+     * @return The user
+     * @throws UsernameNotFoundException If no user has the email
+     */
     @Override
+    @Transactional(readOnly = true)
     public UserDetailsImpl loadUserByUsername(String email) {
         User user = userRepository.findByEmailIgnoreCase(email);
         if (user == null) {
@@ -23,4 +35,22 @@ public class UserDetailsServiceImpl implements UserDetailsService {
         }
         return new UserDetailsImpl(user);
     }
+
+    /**
+     * This method stores a new hash of the password of a user. It is called after a successful login if the stored
+     * hash was created with a lower BCrypt strength than the configured one.
+     *
+     * @param userDetails The authenticated user
+     * @param newPassword The new hash of the password
+     * @return The user with the new hash
+     */
+    @Override
+    public UserDetailsImpl updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByEmailIgnoreCase(userDetails.getUsername());
+        if (user == null) {
+            throw new UsernameNotFoundException("User not found");
+        }
+        user.setPassword(newPassword);
+        return new UserDetailsImpl(userRepository.save(user));
+    }
 }
@@ -0,0 +1,94 @@
+package io.github.dankoller.springrecipe.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This class times every service operation that produces a response. The timers are tagged with the service class,
+ * the method and the outcome (the HTTP status of the response), the sizes of search results are recorded in a
+ * distribution summary.
+ */
+@Aspect
+@Component
+public class ServiceMetricsAspect {
+    public static final String TIMER_NAME = "recipes.service";
+    public static final String SEARCH_RESULTS_NAME = "recipes.search.results";
+
+    private final MeterRegistry meterRegistry;
+
+    public ServiceMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * This method times a service method returning a {@link ResponseEntity}, or a {@link CompletableFuture} of one.
+     * Asynchronous operations are timed until the future completes.
+     *
+     * @param joinPoint The service method invocation
+     * @return The result of the service method
+     * @throws Throwable If the service method throws
+     */
+    @Around("execution(public (org.springframework.http.ResponseEntity || java.util.concurrent.CompletableFuture) "
+            + "io.github.dankoller.springrecipe.service..*.*(..))")
+    public Object timeServiceMethod(ProceedingJoinPoint joinPoint) throws Throwable {
+        String className = joinPoint.getSignature().getDeclaringType().getSimpleName();
+        String method = joinPoint.getSignature().getName();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            stop(sample, className, method, "exception");
+            throw e;
+        }
+        if (result instanceof CompletableFuture<?> future) {
+            return future.whenComplete((response, error) -> stop(sample, className, method,
+                    error == null ? outcome(className, method, response) : "exception"));
+        }
+        stop(sample, className, method, outcome(className, method, result));
+        return result;
+    }
+
+    /**
+     * A helper method to derive the outcome tag from the response and to record the size of search results.
+     */
+    private String outcome(String className, String method, Object result) {
+        if (result instanceof ResponseEntity<?> response) {
+            if (response.getBody() instanceof Collection<?> recipes) {
+                recordSearchResultSize(className, method, recipes.size());
+            }
+            return String.valueOf(response.getStatusCodeValue());
+        }
+        return "unknown";
+    }
+
+    private void stop(Timer.Sample sample, String className, String method, String outcome) {
+        sample.stop(Timer.builder(TIMER_NAME)
+                .description("Service operations")
+                .tag("class", className)
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private void recordSearchResultSize(String className, String method, int size) {
+        DistributionSummary.builder(SEARCH_RESULTS_NAME)
+                .description("Number of recipes returned by searches")
+                .baseUnit("recipes")
+                .tag("class", className)
+                .tag("method", method)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(size);
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.dankoller.springrecipe.persistence;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class routes the connections of read-only transactions to the replica database while the replica monitor
+ * considers it available, all other connections to the primary database. Every routing decision is counted, tagged
+ * with the target and the reason. The counters are registered once the meter registry binds them, the data source
+ * can't depend on the registry, whose data source metrics depend on the data source.
+ * <p>
+ * The read-only flag of a transaction is only exposed after the transaction began, so this data source has to be
+ * wrapped in a LazyConnectionDataSourceProxy, which fetches the connection with the first statement.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements MeterBinder {
+    public static final String ROUTING_METRIC = "recipes.datasource.routing";
+
+    private enum Target {
+        PRIMARY, REPLICA
+    }
+
+    private final ReplicaMonitor replicaMonitor;
+    private final LongAdder readWrite = new LongAdder();
+    private final LongAdder readOnly = new LongAdder();
+    private final LongAdder fallback = new LongAdder();
+
+    public ReadWriteRoutingDataSource(DataSource primary, ReplicaMonitor replicaMonitor) {
+        this.replicaMonitor = replicaMonitor;
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replicaMonitor.getReplica()));
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        counter(registry, readWrite, "primary", "read-write");
+        counter(registry, readOnly, "replica", "read-only");
+        counter(registry, fallback, "primary", "fallback");
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            readWrite.increment();
+            return Target.PRIMARY;
+        }
+        if (!replicaMonitor.isAvailable()) {
+            fallback.increment();
+            return Target.PRIMARY;
+        }
+        readOnly.increment();
+        return Target.REPLICA;
+    }
+
+    private static void counter(MeterRegistry registry, LongAdder count, String target, String reason) {
+        FunctionCounter.builder(ROUTING_METRIC, count, LongAdder::sum)
+                .description("The connections routed to the primary or the replica database")
+                .tag("target", target)
+                .tag("reason", reason)
+                .register(registry);
+    }
+}
@@ -0,0 +1,15 @@
+package io.github.dankoller.springrecipe.persistence;
+
+import java.time.LocalDateTime;
+
+/**
+ * This class is a projection of the category and date of a recipe. It is used to build the category facets without
+ * loading the recipes.
+ *
+ * @param id       The id of the recipe
+ * @param category The category of the recipe
+ * @param date     The date of the recipe
+ * @param version  The version of the recipe
+ */
+public record RecipeCategory(long id, String category, LocalDateTime date, long version) {
+}
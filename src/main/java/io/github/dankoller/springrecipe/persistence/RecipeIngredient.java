@@ -0,0 +1,15 @@
+package io.github.dankoller.springrecipe.persistence;
+
+import java.time.LocalDateTime;
+
+/**
+ * This class is a projection of an ingredient of a recipe, together with the date and version of the recipe. It is
+ * used to build the ingredient index without loading the recipes.
+ *
+ * @param id         The id of the recipe
+ * @param date       The date of the recipe
+ * @param version    The version of the recipe
+ * @param ingredient The ingredient
+ */
+public record RecipeIngredient(long id, LocalDateTime date, long version, String ingredient) {
+}
@@ -1,17 +1,105 @@
 package io.github.dankoller.springrecipe.persistence;
 
 import io.github.dankoller.springrecipe.entity.Recipe;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static io.github.dankoller.springrecipe.config.CacheConfiguration.RECIPES_CACHE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 /**
  * This interface is used to interact with the recipe table in the database.
  */
 @Repository
-public interface RecipeRepository extends CrudRepository<Recipe, Long> {
+public interface RecipeRepository extends PagingAndSortingRepository<Recipe, Long> {
+    // Reads by id go through the recipe cache, writes through this repository keep it up to date
+    @Override
+    @Cacheable(value = RECIPES_CACHE, unless = "#result == null")
+    Optional<Recipe> findById(Long id);
+
+    @Override
+    @CachePut(value = RECIPES_CACHE, key = "#result.id")
+    <S extends Recipe> S save(S recipe);
+
+    @Override
+    @CacheEvict(RECIPES_CACHE)
+    void deleteById(Long id);
+
+    // Uncached read for the write paths, so they never modify a cached instance
+    Optional<Recipe> findRecipeById(long id);
+
+    // Ownership checked in the same statement: empty if the recipe doesn't exist or belongs to someone else
+    Optional<Recipe> findRecipeByIdAndAuthorEmail(long id, String email);
+
+    // Deletes the recipe only if it belongs to the given user, the element tables are cleared by ON DELETE CASCADE
+    @Modifying
+    @Transactional
+    @CacheEvict(value = RECIPES_CACHE, key = "#p0")
+    @Query("delete from Recipe r where r.id = :id "
+            + "and r.author in (select u from User u where u.email = :email)")
+    int deleteByIdAndAuthorEmail(@Param("id") long id, @Param("email") String email);
+
+    @Query("select new io.github.dankoller.springrecipe.persistence.RecipeVersion(r.version, r.lastModified) "
+            + "from Recipe r where r.id = :id")
+    Optional<RecipeVersion> findVersionById(@Param("id") long id);
+
+    @Query("select new io.github.dankoller.springrecipe.persistence.RecipeCategory(r.id, r.category, r.date, "
+            + "r.version) "
+            + "from Recipe r")
+    List<RecipeCategory> findAllCategories();
+
+    @Query("select new io.github.dankoller.springrecipe.persistence.RecipeIngredient(r.id, r.date, r.version, i) "
+            + "from Recipe r join r.ingredients i")
+    List<RecipeIngredient> findAllIngredients();
+
     List<Recipe> findAllByNameContainingIgnoreCaseOrderByDateDesc(String name);
 
-    List<Recipe> findAllByCategoryIgnoreCaseOrderByDateDesc(String category);
+    // Category queries use the lower-cased category_key column (see Recipe.toCategoryKey) to hit its index
+    List<Recipe> findAllByCategoryKeyOrderByDateDesc(String categoryKey);
+
+    Slice<Recipe> findAllByCategoryKey(String categoryKey, Pageable pageable);
+
+    // Keyset pagination: continues after the given (date, id) instead of skipping an offset
+    @Query("select r from Recipe r where r.categoryKey = :categoryKey "
+            + "and (r.date < :date or (r.date = :date and r.id < :id))")
+    Slice<Recipe> findAllByCategoryKeyAfter(@Param("categoryKey") String categoryKey,
+                                            @Param("date") LocalDateTime date,
+                                            @Param("id") long id,
+                                            Pageable pageable);
+
+    @Query("select r from Recipe r join r.ingredients i where i = :ingredient order by r.date desc")
+    List<Recipe> findAllByIngredientOrderByDateDesc(@Param("ingredient") String ingredient);
+
+    // Streams the ids of the recipes from a cursor (has to be consumed within a transaction), all filters are
+    // optional. The recipes are loaded per window of ids, since every recipe loaded from a cursor would fetch its
+    // ingredients and directions on its own.
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select r.id from Recipe r where (:categoryKey is null or r.categoryKey = :categoryKey) "
+            + "and (:from is null or r.date >= :from) and (:to is null or r.date < :to) order by r.id")
+    Stream<Long> streamIds(@Param("categoryKey") String categoryKey,
+                           @Param("from") LocalDateTime from,
+                           @Param("to") LocalDateTime to);
+
+    // Loaded in one query, the ingredients and directions of the recipes are then fetched in batches
+    @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+    @Query("select r from Recipe r where r.id in :ids order by r.id")
+    List<Recipe> findAllByIdInOrderById(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,13 @@
+package io.github.dankoller.springrecipe.persistence;
+
+import java.time.LocalDateTime;
+
+/**
+ * This class is a projection of the version and last modification time of a recipe. It is used to answer conditional
+ * requests without loading the recipe.
+ *
+ * @param version      The version of the recipe
+ * @param lastModified The time the recipe was last modified
+ */
+public record RecipeVersion(long version, LocalDateTime lastModified) {
+}
@@ -0,0 +1,102 @@
+package io.github.dankoller.springrecipe.persistence;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * This class checks whether reads can be routed to the replica database. The replica is available if it answers and
+ * lags behind the primary database by at most the maximum lag.
+ * <p>
+ * The lag is measured with the cache invalidation outbox, which gets a row with every write: it's the age of the
+ * oldest row on the primary database that is not on the replica yet (zero if the replica has all rows). A replica
+ * that can't be queried, e.g. because it's down or not migrated yet, is unavailable. The state is published as
+ * gauges once the meter registry binds them.
+ */
+@Slf4j
+public class ReplicaMonitor implements MeterBinder {
+    public static final String AVAILABLE_METRIC = "recipes.datasource.replica.available";
+    public static final String LAG_METRIC = "recipes.datasource.replica.lag";
+
+    private final DataSource replica;
+    private final JdbcTemplate primaryJdbcTemplate;
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final Duration maxLag;
+    // Unavailable until the first check succeeded
+    private volatile boolean available;
+    private volatile double lagSeconds = Double.NaN;
+
+    public ReplicaMonitor(DataSource primary, DataSource replica, Duration maxLag) {
+        this.replica = replica;
+        this.primaryJdbcTemplate = new JdbcTemplate(primary);
+        this.replicaJdbcTemplate = new JdbcTemplate(replica);
+        this.maxLag = maxLag;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        registry.gauge(AVAILABLE_METRIC, this, monitor -> monitor.available ? 1 : 0);
+        registry.gauge(LAG_METRIC, this, monitor -> monitor.lagSeconds);
+    }
+
+    /**
+     * This method returns the replica database.
+     *
+     * @return The data source of the replica
+     */
+    public DataSource getReplica() {
+        return replica;
+    }
+
+    /**
+     * This method returns whether reads can be routed to the replica, as of the last check.
+     *
+     * @return True if the replica is up and doesn't lag behind by more than the maximum lag
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * This method checks the state and the lag of the replica.
+     */
+    // Scheduled takes milliseconds or ISO-8601 only, so the interval is converted like the other durations
+    @Scheduled(fixedDelayString = "#{T(org.springframework.boot.convert.DurationStyle)"
+            + ".detectAndParse('${recipes.datasource.replica.check-interval:5s}').toMillis()}")
+    public void check() {
+        boolean wasAvailable = available;
+        try {
+            Long replicated = replicaJdbcTemplate.queryForObject(
+                    "select coalesce(max(id), 0) from cache_invalidation", Long.class);
+            Timestamp missing = primaryJdbcTemplate.queryForObject(
+                    "select min(created_at) from cache_invalidation where id > ?", Timestamp.class, replicated);
+            Duration lag = missing == null
+                    ? Duration.ZERO
+                    : Duration.between(missing.toLocalDateTime(), LocalDateTime.now());
+            // The rows are timestamped by the writing instance, whose clock may be ahead
+            lagSeconds = Math.max(0, lag.toMillis() / 1000.0);
+            available = lag.compareTo(maxLag) <= 0;
+            if (wasAvailable && !available) {
+                log.warn("Replica lags behind by {}s, reads fall back to the primary database", lagSeconds);
+            }
+        } catch (DataAccessException e) {
+            lagSeconds = Double.NaN;
+            available = false;
+            if (wasAvailable) {
+                log.warn("Replica is unavailable, reads fall back to the primary database: {}",
+                        e.getMostSpecificCause().getMessage());
+            }
+        }
+        if (!wasAvailable && available) {
+            log.info("Replica is available, read-only transactions are routed to it");
+        }
+    }
+}
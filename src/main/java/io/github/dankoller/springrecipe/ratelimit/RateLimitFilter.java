@@ -0,0 +1,64 @@
+package io.github.dankoller.springrecipe.ratelimit;
+
+import io.github.dankoller.springrecipe.entity.user.UserDetailsImpl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * This filter rejects requests exceeding the rate limits with 429 Too Many Requests and a Retry-After header. It is
+ * added to the security filter chain twice: before authentication to limit client addresses (and the total rate),
+ * and after authentication to limit users. Like the token filter it therefore isn't a bean.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+    private final RateLimiter rateLimiter;
+    private final boolean perUser;
+
+    /**
+     * @param rateLimiter The {@link RateLimiter} holding the buckets
+     * @param perUser     True to limit the authenticated user, false to limit the client address
+     */
+    public RateLimitFilter(RateLimiter rateLimiter, boolean perUser) {
+        this.rateLimiter = rateLimiter;
+        this.perUser = perUser;
+    }
+
+    /**
+     * Both instances are of this class, so they need their own attribute marking a request as filtered. Otherwise the
+     * per user instance would skip every request the client instance already passed.
+     */
+    @Override
+    protected String getAlreadyFilteredAttributeName() {
+        return super.getAlreadyFilteredAttributeName() + (perUser ? ".user" : ".client");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String endpoint = RateLimiter.endpoint(request.getMethod(), request.getRequestURI());
+        long wait;
+        if (perUser) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            wait = authentication != null && authentication.getPrincipal() instanceof UserDetailsImpl user
+                    ? rateLimiter.acquireUser(user.getUsername(), endpoint)
+                    : 0;
+        } else {
+            wait = rateLimiter.acquireClient(request.getRemoteAddr(), endpoint);
+        }
+        if (wait > 0) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(RateLimiter.retryAfterSeconds(wait)));
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
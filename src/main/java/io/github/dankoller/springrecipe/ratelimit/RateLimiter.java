@@ -0,0 +1,270 @@
+package io.github.dankoller.springrecipe.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class limits the request rate per client address, per user and in total. Every limit is a token bucket with
+ * a rate (tokens per second) and a burst (the tokens a bucket holds), and every request takes as many tokens as its
+ * endpoint costs, so expensive endpoints like the search are exhausted sooner than cheap ones.
+ * <p>
+ * The buckets are implemented with the generic cell rate algorithm: a bucket is a single {@link AtomicLong} holding
+ * the time at which it will be full again, updated with compare-and-set, so no lock is taken. The global bucket is
+ * striped over several cells, which each get their share of the rate, to keep all threads from competing for a
+ * single counter.
+ */
+@Component
+public class RateLimiter {
+    public static final String REJECTIONS_METRIC = "recipes.ratelimit.rejections";
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    // Cells of the global bucket are spaced by 128 bytes, so they don't share a cache line
+    private static final int CELL_PADDING = 16;
+
+    private final boolean enabled;
+    private final Limit userLimit;
+    private final Limit clientLimit;
+    private final Limit globalLimit;
+    private final Map<String, Integer> costs;
+    private final Cache<String, AtomicLong> userBuckets;
+    private final Cache<String, AtomicLong> clientBuckets;
+    private final AtomicLongArray globalCells;
+    private final int stripes;
+    private final MeterRegistry meterRegistry;
+    // The buckets measure time relative to this origin, so an empty bucket is simply 0
+    private final long origin = System.nanoTime();
+
+    public RateLimiter(MeterRegistry meterRegistry,
+                       @Value("${recipes.rate-limit.enabled:true}") boolean enabled,
+                       @Value("${recipes.rate-limit.user.rate:50}") double userRate,
+                       @Value("${recipes.rate-limit.user.burst:100}") double userBurst,
+                       @Value("${recipes.rate-limit.client.rate:100}") double clientRate,
+                       @Value("${recipes.rate-limit.client.burst:200}") double clientBurst,
+                       @Value("${recipes.rate-limit.global.rate:2000}") double globalRate,
+                       @Value("${recipes.rate-limit.global.burst:4000}") double globalBurst,
+                       @Value("${recipes.rate-limit.costs:}") String costs,
+                       @Value("${recipes.rate-limit.maximum-size:100000}") long maximumSize,
+                       @Value("${recipes.rate-limit.idle-timeout:10m}") Duration idleTimeout) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.userLimit = new Limit(userRate, userBurst);
+        this.clientLimit = new Limit(clientRate, clientBurst);
+        // A power of two, so a stripe is selected with a mask
+        this.stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2);
+        this.globalLimit = new Limit(globalRate / stripes, globalBurst / stripes);
+        this.globalCells = new AtomicLongArray(stripes * CELL_PADDING);
+        this.costs = parseCosts(costs);
+        // A bucket that wasn't used for the idle timeout is full again and can be dropped
+        this.userBuckets = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(idleTimeout)
+                .build();
+        this.clientBuckets = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(idleTimeout)
+                .build();
+    }
+
+    /**
+     * This method checks if rate limiting is enabled.
+     *
+     * @return True if requests are limited, false otherwise
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * This method takes the tokens for a request from the bucket of the client address and from the global bucket.
+     * It is called before the request is authenticated, so it also limits failing login attempts.
+     *
+     * @param address  The address of the client
+     * @param endpoint The endpoint requested, see {@link #endpoint(String, String)}
+     * @return 0 if the request may proceed, otherwise the nanoseconds until it may be retried
+     */
+    public long acquireClient(String address, String endpoint) {
+        int cost = cost(endpoint);
+        long now = System.nanoTime() - origin;
+        AtomicLong bucket = clientBuckets.get(address, key -> new AtomicLong());
+        long wait = clientLimit.acquire(bucket, now, cost);
+        if (wait > 0) {
+            return reject("client", endpoint, wait);
+        }
+        int cell = (int) (mix(Thread.currentThread().getId()) & (stripes - 1)) * CELL_PADDING;
+        wait = globalLimit.acquire(globalCells, cell, now, cost);
+        if (wait > 0) {
+            // The request doesn't proceed, so the client doesn't pay for it
+            clientLimit.release(bucket, cost);
+            return reject("global", endpoint, wait);
+        }
+        return 0;
+    }
+
+    /**
+     * This method takes the tokens for a request from the bucket of the authenticated user.
+     *
+     * @param username The email of the user
+     * @param endpoint The endpoint requested, see {@link #endpoint(String, String)}
+     * @return 0 if the request may proceed, otherwise the nanoseconds until it may be retried
+     */
+    public long acquireUser(String username, String endpoint) {
+        int cost = cost(endpoint);
+        long now = System.nanoTime() - origin;
+        long wait = userLimit.acquire(userBuckets.get(username, key -> new AtomicLong()), now, cost);
+        return wait > 0 ? reject("user", endpoint, wait) : 0;
+    }
+
+    /**
+     * This method maps a request to the name of its endpoint, which is used to look up its cost and to tag the
+     * rejection metric.
+     *
+     * @param method The HTTP method of the request
+     * @param path   The path of the request
+     * @return The name of the endpoint, "other" for requests outside the API
+     */
+    public static String endpoint(String method, String path) {
+        switch (path) {
+            case "/api/recipe/search":
+                return "search";
+            case "/api/recipe/export":
+                return "export";
+            case "/api/recipe/categories":
+                return "categories";
+            case "/api/recipe/import":
+                return "import";
+            case "/api/recipe/new":
+                return "new";
+            case "/api/register":
+                return "register";
+            case "/api/login":
+            case "/api/token/refresh":
+                return "login";
+            default:
+                if (!path.startsWith("/api/recipe/")) {
+                    return "other";
+                }
+                switch (method) {
+                    case "PUT":
+                        return "update";
+                    case "DELETE":
+                        return "delete";
+                    default:
+                        return "get";
+                }
+        }
+    }
+
+    /**
+     * This method converts the time until a request may be retried into the value of a Retry-After header.
+     *
+     * @param wait The nanoseconds to wait
+     * @return The seconds to wait, rounded up
+     */
+    public static long retryAfterSeconds(long wait) {
+        return Math.max(1, (wait + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+    }
+
+    /**
+     * A helper method to count a rejected request.
+     */
+    private long reject(String scope, String endpoint, long wait) {
+        meterRegistry.counter(REJECTIONS_METRIC, "scope", scope, "endpoint", endpoint).increment();
+        return wait;
+    }
+
+    /**
+     * A helper method to get the cost of an endpoint, endpoints without a configured cost cost 1.
+     */
+    private int cost(String endpoint) {
+        return costs.getOrDefault(endpoint, 1);
+    }
+
+    /**
+     * A helper method to parse the configured costs, e.g. "search=5,get=1".
+     */
+    private static Map<String, Integer> parseCosts(String costs) {
+        Map<String, Integer> parsed = new HashMap<>();
+        for (String entry : costs.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid rate limit cost: " + entry);
+            }
+            parsed.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+        }
+        return Map.copyOf(parsed);
+    }
+
+    /**
+     * A helper method to spread consecutive thread ids over the stripes.
+     */
+    private static long mix(long value) {
+        value *= 0x9E3779B97F4A7C15L;
+        return value ^ (value >>> 32);
+    }
+
+    /**
+     * The rate and burst of a bucket, converted to the time a token takes to be refilled and the time a full bucket
+     * takes to be refilled.
+     */
+    private static final class Limit {
+        private final long interval;
+        private final long tolerance;
+
+        private Limit(double rate, double burst) {
+            if (rate <= 0 || burst < 1) {
+                throw new IllegalArgumentException("Invalid rate limit: rate " + rate + ", burst " + burst);
+            }
+            this.interval = Math.max(1, Math.round(NANOS_PER_SECOND / rate));
+            this.tolerance = Math.round(interval * burst);
+        }
+
+        private long acquire(AtomicLong bucket, long now, int cost) {
+            long increment = interval * cost;
+            // A request costing more than the burst passes on a full bucket instead of never
+            long tolerance = Math.max(this.tolerance, increment);
+            while (true) {
+                long full = bucket.get();
+                long next = Math.max(full, now) + increment;
+                long wait = next - now - tolerance;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (bucket.compareAndSet(full, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        private long acquire(AtomicLongArray cells, int cell, long now, int cost) {
+            long increment = interval * cost;
+            long tolerance = Math.max(this.tolerance, increment);
+            while (true) {
+                long full = cells.get(cell);
+                long next = Math.max(full, now) + increment;
+                long wait = next - now - tolerance;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (cells.compareAndSet(cell, full, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        private void release(AtomicLong bucket, int cost) {
+            bucket.addAndGet(-interval * cost);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.dankoller.springrecipe.ratelimit;
+
+import io.github.dankoller.springrecipe.entity.user.UserDetailsImpl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+/**
+ * This filter is the reactive counterpart of {@link RateLimitFilter}, added to the security filter chain before and
+ * after authentication.
+ */
+public class ReactiveRateLimitFilter implements WebFilter {
+    private final RateLimiter rateLimiter;
+    private final boolean perUser;
+
+    /**
+     * @param rateLimiter The {@link RateLimiter} holding the buckets
+     * @param perUser     True to limit the authenticated user, false to limit the client address
+     */
+    public ReactiveRateLimitFilter(RateLimiter rateLimiter, boolean perUser) {
+        this.rateLimiter = rateLimiter;
+        this.perUser = perUser;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String endpoint = RateLimiter.endpoint(exchange.getRequest().getMethodValue(),
+                exchange.getRequest().getPath().value());
+        if (!perUser) {
+            InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
+            String address = remoteAddress != null && remoteAddress.getAddress() != null
+                    ? remoteAddress.getAddress().getHostAddress()
+                    : "unknown";
+            return proceed(exchange, chain, rateLimiter.acquireClient(address, endpoint));
+        }
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .filter(authentication -> authentication.getPrincipal() instanceof UserDetailsImpl)
+                .map(authentication -> rateLimiter.acquireUser(
+                        ((UserDetailsImpl) authentication.getPrincipal()).getUsername(), endpoint))
+                .defaultIfEmpty(0L)
+                .flatMap(wait -> proceed(exchange, chain, wait));
+    }
+
+    /**
+     * A helper method to continue the filter chain, or to answer with 429 if the request has to wait.
+     */
+    private static Mono<Void> proceed(ServerWebExchange exchange, WebFilterChain chain, long wait) {
+        if (wait <= 0) {
+            return chain.filter(exchange);
+        }
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(RateLimiter.retryAfterSeconds(wait)));
+        return response.setComplete();
+    }
+}
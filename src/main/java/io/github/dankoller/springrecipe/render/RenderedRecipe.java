@@ -0,0 +1,22 @@
+package io.github.dankoller.springrecipe.render;
+
+import java.time.LocalDateTime;
+
+/**
+ * The serialized JSON of a recipe in a specific version.
+ *
+ * @param version      The version of the recipe the JSON was rendered from
+ * @param lastModified The last modification time of the recipe
+ * @param json         The JSON of the recipe
+ * @param gzip         The gzip compressed JSON, or null if the JSON is too small to be worth compressing
+ */
+public record RenderedRecipe(long version, LocalDateTime lastModified, byte[] json, byte[] gzip) {
+    /**
+     * This method returns the number of bytes held by this rendering, used to bound the size of the cache.
+     *
+     * @return The size in bytes
+     */
+    public int size() {
+        return json.length + (gzip == null ? 0 : gzip.length);
+    }
+}
@@ -0,0 +1,131 @@
+package io.github.dankoller.springrecipe.render;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.dankoller.springrecipe.entity.Recipe;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class caches the serialized JSON of recipes (and a gzip compressed copy of larger ones), so reading a recipe
+ * that didn't change doesn't serialize it again. The entries carry the version they were rendered from; writes
+ * replace or drop them, and an older rendering never replaces a newer one.
+ */
+@Component
+public class RenderedRecipeCache {
+    private final ObjectWriter writer;
+    private final Cache<Long, RenderedRecipe> cache;
+    private final int gzipMinSize;
+
+    public RenderedRecipeCache(ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               @Value("${recipes.render-cache.maximum-weight:67108864}") long maximumWeight,
+                               @Value("${recipes.render-cache.ttl:10m}") Duration ttl,
+                               @Value("${recipes.render-cache.gzip-min-size:1024}") int gzipMinSize) {
+        this.writer = objectMapper.writerFor(Recipe.class);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((Long id, RenderedRecipe rendered) -> rendered.size())
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.gzipMinSize = gzipMinSize;
+        // Publishes hit, miss, eviction and size metrics through the actuator
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "renderedRecipes");
+    }
+
+    /**
+     * This method returns the cached rendering of a recipe.
+     *
+     * @param id The id of the recipe
+     * @return The rendering, or null if the recipe isn't cached
+     */
+    public RenderedRecipe get(long id) {
+        return cache.getIfPresent(id);
+    }
+
+    /**
+     * This method returns the rendering of the given recipe, rendering and caching it if the cache doesn't hold its
+     * version yet.
+     *
+     * @param recipe The recipe to render
+     * @return The rendering of the recipe
+     */
+    public RenderedRecipe render(Recipe recipe) {
+        RenderedRecipe cached = cache.getIfPresent(recipe.getId());
+        if (cached != null && cached.version() == recipe.getVersion()) {
+            return cached;
+        }
+        RenderedRecipe rendered = serialize(recipe);
+        // Keep the newer rendering if a concurrent update already replaced the entry
+        return cache.asMap().merge(recipe.getId(), rendered,
+                (existing, candidate) -> candidate.version() >= existing.version() ? candidate : existing);
+    }
+
+    /**
+     * This method drops the rendering of a recipe, e.g. because it was deleted.
+     *
+     * @param id The id of the recipe
+     */
+    public void evict(long id) {
+        cache.invalidate(id);
+    }
+
+    /**
+     * A helper method to serialize a recipe and to compress the JSON if it is large enough.
+     */
+    private RenderedRecipe serialize(Recipe recipe) {
+        try {
+            byte[] json = writer.writeValueAsBytes(recipe);
+            byte[] gzip = json.length >= gzipMinSize ? gzip(json) : null;
+            return new RenderedRecipe(recipe.getVersion(), recipe.getLastModified(), json, gzip);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Recipe " + recipe.getId() + " can't be serialized", e);
+        }
+    }
+
+    /**
+     * A helper method to gzip compress a byte array.
+     */
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(bytes.length / 2);
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * This method checks if a client accepts gzip compressed responses.
+     *
+     * @param acceptEncoding The Accept-Encoding header of the request (may be null)
+     * @return True if gzip is accepted, false otherwise
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (name.equalsIgnoreCase("gzip") || name.equals("*")) {
+                // "gzip;q=0" explicitly refuses gzip
+                return parts.length < 2 || !parts[1].trim().matches("(?i)q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.dankoller.springrecipe.request;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.time.Instant;
+
+/**
+ * This interface gives the service layer access to the conditional headers of a request (If-None-Match and
+ * If-Modified-Since) and the other headers negotiating the response, independent of the web stack serving the
+ * request.
+ */
+public interface ConditionalRequest {
+    /**
+     * This method returns the first value of a request header.
+     *
+     * @param name The name of the header
+     * @return The value of the header, or null if the request doesn't carry it
+     */
+    String getHeader(String name);
+
+    /**
+     * This method checks if the request carries any conditional header.
+     *
+     * @return True if the request is conditional, false otherwise
+     */
+    default boolean isConditional() {
+        return getHeader(HttpHeaders.IF_NONE_MATCH) != null || getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
+
+    /**
+     * This method checks the conditional headers against the given ETag and modification time and adds both as
+     * headers to the response.
+     *
+     * @param eTag         The ETag of the resource
+     * @param lastModified The modification time of the resource in milliseconds (or -1 if unknown)
+     * @return True if the resource wasn't modified and the response should be 304, false otherwise
+     */
+    boolean checkNotModified(String eTag, long lastModified);
+
+    /**
+     * This method checks the conditional headers against the given ETag and adds it as header to the response.
+     *
+     * @param eTag The ETag of the resource
+     * @return True if the resource wasn't modified and the response should be 304, false otherwise
+     */
+    default boolean checkNotModified(String eTag) {
+        return checkNotModified(eTag, -1);
+    }
+
+    /**
+     * This method adapts a request of the servlet stack.
+     *
+     * @param request The request to adapt
+     * @return The conditional request
+     */
+    static ConditionalRequest of(WebRequest request) {
+        return new ConditionalRequest() {
+            @Override
+            public String getHeader(String name) {
+                return request.getHeader(name);
+            }
+
+            @Override
+            public boolean checkNotModified(String eTag, long lastModified) {
+                return request.checkNotModified(eTag, lastModified);
+            }
+        };
+    }
+
+    /**
+     * This method adapts a request of the reactive stack.
+     *
+     * @param exchange The exchange to adapt
+     * @return The conditional request
+     */
+    static ConditionalRequest of(ServerWebExchange exchange) {
+        return new ConditionalRequest() {
+            @Override
+            public String getHeader(String name) {
+                return exchange.getRequest().getHeaders().getFirst(name);
+            }
+
+            @Override
+            public boolean checkNotModified(String eTag, long lastModified) {
+                return lastModified < 0
+                        ? exchange.checkNotModified(eTag)
+                        : exchange.checkNotModified(eTag, Instant.ofEpochMilli(lastModified));
+            }
+        };
+    }
+}
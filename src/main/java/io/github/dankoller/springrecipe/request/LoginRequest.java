@@ -0,0 +1,18 @@
+package io.github.dankoller.springrecipe.request;
+
+import lombok.*;
+
+import javax.validation.constraints.NotBlank;
+
+/**
+ * This class represents a request to log in with email and password.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoginRequest {
+    @NotBlank(message = "Email cannot be blank")
+    private String email;
+    @NotBlank(message = "Password cannot be blank")
+    private String password;
+}
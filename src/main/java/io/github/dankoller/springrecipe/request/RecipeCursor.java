@@ -0,0 +1,59 @@
+package io.github.dankoller.springrecipe.request;
+
+import io.github.dankoller.springrecipe.entity.Recipe;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * This class represents a keyset cursor (the date and id of the last recipe of a page) that is handed to the client
+ * as an opaque token and used to continue a search after that recipe.
+ *
+ * @param date The date of the last recipe of the previous page
+ * @param id   The id of the last recipe of the previous page
+ */
+public record RecipeCursor(LocalDateTime date, long id) {
+
+    /**
+     * This method creates the cursor pointing after the given recipe.
+     *
+     * @param recipe The last recipe of a page
+     * @return The cursor pointing after the recipe
+     */
+    public static RecipeCursor after(Recipe recipe) {
+        return new RecipeCursor(recipe.getDate(), recipe.getId());
+    }
+
+    /**
+     * This method decodes a cursor token.
+     *
+     * @param token The token to decode
+     * @return The decoded cursor
+     * @throws IllegalArgumentException If the token is malformed
+     */
+    public static RecipeCursor decode(String token) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf(',');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return new RecipeCursor(LocalDateTime.parse(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    /**
+     * This method encodes the cursor into an opaque, URL-safe token.
+     *
+     * @return The encoded token
+     */
+    public String encode() {
+        String value = date + "," + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,18 @@
+package io.github.dankoller.springrecipe.request;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+import javax.validation.constraints.NotBlank;
+
+/**
+ * This class represents a request to exchange a refresh token for new tokens.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefreshRequest {
+    @NotBlank(message = "Refresh token cannot be blank")
+    @JsonProperty("refresh_token")
+    private String refreshToken;
+}
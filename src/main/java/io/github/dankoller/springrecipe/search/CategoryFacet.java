@@ -0,0 +1,14 @@
+package io.github.dankoller.springrecipe.search;
+
+import java.time.LocalDateTime;
+
+/**
+ * This class is a category together with the number of its recipes and the date of the newest one. It is used as
+ * response object for the REST API.
+ *
+ * @param category The category (as spelled by its first recipe, categories are compared case-insensitively)
+ * @param count    The number of recipes in the category
+ * @param latest   The date of the newest recipe in the category (null if no recipe has a date)
+ */
+public record CategoryFacet(String category, long count, LocalDateTime latest) {
+}
@@ -0,0 +1,170 @@
+package io.github.dankoller.springrecipe.search;
+
+import io.github.dankoller.springrecipe.entity.Recipe;
+import io.github.dankoller.springrecipe.persistence.RecipeCategory;
+import io.github.dankoller.springrecipe.persistence.RecipeRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * This class holds the number of recipes and the date of the newest recipe per category (compared
+ * case-insensitively, like category queries). It is rebuilt from the database at startup and kept up to date by the
+ * RecipeService write methods, so listing the categories never scans the recipe table. Reads are served from a
+ * sorted snapshot that is only recomputed after a write.
+ */
+@Component
+@SuppressWarnings("unused")
+public class CategoryFacetIndex implements RecipeIndex {
+    private static final Comparator<Facet> MOST_RECIPES_FIRST = Comparator.<Facet>comparingLong(facet -> facet.count)
+            .reversed()
+            .thenComparing(facet -> facet.key);
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+
+    // Category key and date of every indexed recipe, so updates and deletes know what to subtract
+    private final Map<Long, RecipeCategory> recipes = new HashMap<>();
+    private final Map<String, Facet> facets = new HashMap<>();
+    private final RecipeTombstones tombstones = new RecipeTombstones();
+    // Facets sorted by count, null after a write
+    private volatile List<CategoryFacet> snapshot;
+
+    /**
+     * This method rebuilds the index from the repository at startup. Only the id, category and date of the recipes
+     * are loaded.
+     */
+    @PostConstruct
+    public void rebuild() {
+        rebuild(recipeRepository.findAllCategories());
+    }
+
+    /**
+     * This method replaces the content of the index with the given recipes.
+     *
+     * @param categories The id, category and date of the recipes to index
+     */
+    public synchronized void rebuild(Iterable<RecipeCategory> categories) {
+        recipes.clear();
+        facets.clear();
+        for (RecipeCategory category : categories) {
+            add(category);
+        }
+        snapshot = null;
+    }
+
+    @Override
+    public synchronized void index(Recipe recipe) {
+        if (tombstones.contains(recipe.getId())) {
+            // Deleted by a later write already
+            return;
+        }
+        RecipeCategory previous = recipes.get(recipe.getId());
+        if (previous != null && previous.version() > recipe.getVersion()) {
+            // Indexed by a later write already
+            return;
+        }
+        RecipeCategory category = new RecipeCategory(recipe.getId(), recipe.getCategory(), recipe.getDate(),
+                recipe.getVersion());
+        if (previous != null && Objects.equals(previous.category(), category.category())
+                && Objects.equals(previous.date(), category.date())) {
+            // Same count and date, only the version changed
+            recipes.put(recipe.getId(), category);
+            return;
+        }
+        removeRecipe(recipe.getId());
+        add(category);
+        snapshot = null;
+    }
+
+    @Override
+    public synchronized void remove(long id) {
+        tombstones.add(id);
+        if (removeRecipe(id)) {
+            snapshot = null;
+        }
+    }
+
+    /**
+     * This method returns the categories with the most recipes.
+     *
+     * @param limit The maximum number of categories to return
+     * @return The categories sorted by the number of recipes (descending) and then by name
+     */
+    public List<CategoryFacet> top(int limit) {
+        List<CategoryFacet> sorted = snapshot;
+        if (sorted == null) {
+            sorted = sortedFacets();
+        }
+        return sorted.subList(0, Math.min(limit, sorted.size()));
+    }
+
+    /**
+     * A helper method to sort the facets, unless another reader did so already.
+     */
+    private synchronized List<CategoryFacet> sortedFacets() {
+        if (snapshot == null) {
+            snapshot = facets.values().stream()
+                    .sorted(MOST_RECIPES_FIRST)
+                    .map(facet -> new CategoryFacet(facet.category, facet.count,
+                            facet.dates.isEmpty() ? null : facet.dates.lastKey()))
+                    .toList();
+        }
+        return snapshot;
+    }
+
+    /**
+     * A helper method to count a recipe in its category. The caller has to hold the lock.
+     */
+    private void add(RecipeCategory category) {
+        String key = Recipe.toCategoryKey(category.category());
+        if (key == null) {
+            return;
+        }
+        recipes.put(category.id(), category);
+        Facet facet = facets.computeIfAbsent(key, k -> new Facet(k, category.category()));
+        facet.count++;
+        if (category.date() != null) {
+            facet.dates.merge(category.date(), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * A helper method to remove a recipe from the count of its category. The caller has to hold the lock.
+     */
+    private boolean removeRecipe(long id) {
+        RecipeCategory category = recipes.remove(id);
+        if (category == null) {
+            return false;
+        }
+        String key = Recipe.toCategoryKey(category.category());
+        Facet facet = facets.get(key);
+        if (--facet.count == 0) {
+            facets.remove(key);
+            return true;
+        }
+        if (category.date() != null) {
+            facet.dates.computeIfPresent(category.date(), (date, count) -> count > 1 ? count - 1 : null);
+        }
+        return true;
+    }
+
+    /**
+     * The count of a category and the dates of its recipes (with multiplicity), so the newest date is known after
+     * the newest recipe was deleted.
+     */
+    private static final class Facet {
+        private final String key;
+        private final String category;
+        private final NavigableMap<LocalDateTime, Integer> dates = new TreeMap<>();
+        private long count;
+
+        private Facet(String key, String category) {
+            this.key = key;
+            this.category = category;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package io.github.dankoller.springrecipe.search;
+
+import io.github.dankoller.springrecipe.entity.Recipe;
+import io.github.dankoller.springrecipe.persistence.RecipeIngredient;
+import io.github.dankoller.springrecipe.persistence.RecipeRepository;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * This class is an in-process index from ingredients to the recipes using them, used to find recipes that can be
+ * cooked with a given set of ingredients. Every distinct ingredient maps to a compressed bitmap of recipe ids, so a
+ * query is a union per queried ingredient followed by an intersection (all), a union (any) or a threshold (at least
+ * k) of those bitmaps. A queried ingredient matches every ingredient containing all of its words, e.g. "mint" matches
+ * "fresh mint leaves". The index only keeps the ids, dates and versions of the recipes, a search returns ranked ids.
+ * It is rebuilt from the database at startup and kept up to date by the RecipeService write methods.
+ */
+@Component
+@SuppressWarnings("unused")
+public class IngredientIndex implements RecipeIndex {
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // The bitmaps hold int ids, recipe ids are taken from a sequence and stay far below Integer.MAX_VALUE
+    private final Map<Integer, Document> documents = new HashMap<>();
+    private final Map<String, RoaringBitmap> recipesByIngredient = new HashMap<>();
+    // Resolves the words of a queried ingredient to the indexed ingredients containing them
+    private final Map<String, Set<String>> ingredientsByWord = new HashMap<>();
+    private final RecipeTombstones tombstones = new RecipeTombstones();
+
+    /**
+     * This method rebuilds the index from the repository at startup. Only the ingredients, dates and versions are
+     * loaded, not the recipes.
+     */
+    @PostConstruct
+    public void rebuild() {
+        rebuild(recipeRepository.findAllIngredients());
+    }
+
+    /**
+     * This method replaces the content of the index with the given ingredients.
+     *
+     * @param ingredients The ingredients of the recipes to index, in any order
+     */
+    public void rebuild(Iterable<RecipeIngredient> ingredients) {
+        Map<Integer, Document> rebuilt = new HashMap<>();
+        for (RecipeIngredient ingredient : ingredients) {
+            rebuilt.computeIfAbsent(Math.toIntExact(ingredient.id()),
+                            id -> new Document(ingredient.date(), ingredient.version(), new HashSet<>()))
+                    .ingredients().add(ingredient.ingredient());
+        }
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            recipesByIngredient.clear();
+            ingredientsByWord.clear();
+            rebuilt.forEach(this::add);
+            recipesByIngredient.values().forEach(RoaringBitmap::runOptimize);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void index(Recipe recipe) {
+        lock.writeLock().lock();
+        try {
+            if (tombstones.contains(recipe.getId())) {
+                // Deleted by a later write already
+                return;
+            }
+            Document indexed = documents.get(Math.toIntExact(recipe.getId()));
+            if (indexed != null && indexed.version() > recipe.getVersion()) {
+                // Indexed by a later write already
+                return;
+            }
+            removeDocument(Math.toIntExact(recipe.getId()));
+            Set<String> ingredients = new HashSet<>();
+            if (recipe.getIngredients() != null) {
+                ingredients.addAll(recipe.getIngredients());
+            }
+            add(Math.toIntExact(recipe.getId()), new Document(recipe.getDate(), recipe.getVersion(), ingredients));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            tombstones.add(id);
+            removeDocument(Math.toIntExact(id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method searches the recipes using at least the given number of the queried ingredients.
+     *
+     * @param ingredients    The queried ingredients
+     * @param minimumMatches The number of queried ingredients a recipe has to use (1 for any of them, the number of
+     *                       queried ingredients for all of them)
+     * @return The ids of the matching recipes, the ones using the most queried ingredients first and then by date
+     * (newest first)
+     */
+    public List<Long> search(Collection<String> ingredients, int minimumMatches) {
+        lock.readLock().lock();
+        try {
+            List<RoaringBitmap> bitmaps = new ArrayList<>(ingredients.size());
+            for (String ingredient : ingredients) {
+                bitmaps.add(recipesWith(ingredient));
+            }
+            if (bitmaps.isEmpty() || minimumMatches < 1 || minimumMatches > bitmaps.size()) {
+                return List.of();
+            }
+            RoaringBitmap matches = atLeast(bitmaps, minimumMatches);
+            List<Match> matched = new ArrayList<>(matches.getCardinality());
+            matches.forEach((int id) -> {
+                int count = 0;
+                for (RoaringBitmap bitmap : bitmaps) {
+                    if (bitmap.contains(id)) {
+                        count++;
+                    }
+                }
+                matched.add(new Match(id, documents.get(id).date(), count));
+            });
+            return matched.stream()
+                    .sorted(Comparator.comparingInt(Match::count)
+                            .reversed()
+                            .thenComparing(Match::date, Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+                            .thenComparing(Match::id, Comparator.reverseOrder()))
+                    .map(match -> (long) match.id())
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * A helper method to get the recipes using any indexed ingredient that contains all words of the given one. The
+     * caller has to hold the read lock.
+     */
+    private RoaringBitmap recipesWith(String ingredient) {
+        Set<String> candidates = null;
+        for (String word : words(ingredient)) {
+            Set<String> containing = ingredientsByWord.getOrDefault(word, Set.of());
+            if (candidates == null) {
+                candidates = new HashSet<>(containing);
+            } else {
+                candidates.retainAll(containing);
+            }
+            if (candidates.isEmpty()) {
+                break;
+            }
+        }
+        if (candidates == null || candidates.isEmpty()) {
+            return new RoaringBitmap();
+        }
+        return FastAggregation.or(candidates.stream().map(recipesByIngredient::get).iterator());
+    }
+
+    /**
+     * A helper method to get the ids contained in at least k of the given bitmaps. levels[j] holds the ids seen in
+     * at least j + 1 of the bitmaps processed so far.
+     */
+    private static RoaringBitmap atLeast(List<RoaringBitmap> bitmaps, int k) {
+        if (k == 1) {
+            return FastAggregation.or(bitmaps.iterator());
+        }
+        if (k == bitmaps.size()) {
+            return FastAggregation.and(bitmaps.iterator());
+        }
+        RoaringBitmap[] levels = new RoaringBitmap[k];
+        for (int j = 0; j < k; j++) {
+            levels[j] = new RoaringBitmap();
+        }
+        for (RoaringBitmap bitmap : bitmaps) {
+            for (int j = k - 1; j > 0; j--) {
+                levels[j].or(RoaringBitmap.and(levels[j - 1], bitmap));
+            }
+            levels[0].or(bitmap);
+        }
+        return levels[k - 1];
+    }
+
+    /**
+     * A helper method to add a recipe to the index. The ingredients of the document are replaced by their canonical
+     * form. The caller has to hold the write lock.
+     */
+    private void add(int id, Document document) {
+        Set<String> ingredients = new HashSet<>();
+        for (String ingredient : document.ingredients()) {
+            Set<String> words = words(ingredient);
+            if (!words.isEmpty()) {
+                // The words in a canonical form, so different spellings of an ingredient share a bitmap
+                ingredients.add(String.join(" ", words));
+            }
+        }
+        documents.put(id, new Document(document.date(), document.version(), ingredients));
+        for (String ingredient : ingredients) {
+            recipesByIngredient.computeIfAbsent(ingredient, key -> {
+                for (String word : key.split(" ")) {
+                    ingredientsByWord.computeIfAbsent(word, w -> new HashSet<>()).add(key);
+                }
+                return new RoaringBitmap();
+            }).add(id);
+        }
+    }
+
+    /**
+     * A helper method to remove a recipe from the index. The caller has to hold the write lock.
+     */
+    private void removeDocument(int id) {
+        Document document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        for (String ingredient : document.ingredients()) {
+            RoaringBitmap bitmap = recipesByIngredient.get(ingredient);
+            bitmap.remove(id);
+            if (bitmap.isEmpty()) {
+                recipesByIngredient.remove(ingredient);
+                for (String word : ingredient.split(" ")) {
+                    Set<String> containing = ingredientsByWord.get(word);
+                    containing.remove(ingredient);
+                    if (containing.isEmpty()) {
+                        ingredientsByWord.remove(word);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Set<String> words(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        if (text == null) {
+            return words;
+        }
+        for (String word : WORD_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    // Only what the search needs, the recipes themselves are loaded by the caller
+    private record Document(LocalDateTime date, long version, Set<String> ingredients) {
+    }
+
+    private record Match(int id, LocalDateTime date, int count) {
+    }
+}
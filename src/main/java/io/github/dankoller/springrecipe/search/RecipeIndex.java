@@ -0,0 +1,27 @@
+package io.github.dankoller.springrecipe.search;
+
+import io.github.dankoller.springrecipe.entity.Recipe;
+
+/**
+ * This interface is implemented by the in-memory indexes over the recipes. They are rebuilt from the database at
+ * startup and kept up to date by the write methods of the RecipeService and the RecipeImportService, which update
+ * every index bean after a recipe was saved or deleted.
+ */
+public interface RecipeIndex {
+    /**
+     * This method adds a recipe to the index or replaces the previously indexed version of it. A version older than
+     * the indexed one is ignored, since the writes of concurrent requests (or the invalidations of other instances)
+     * may reach the index out of order.
+     *
+     * @param recipe The recipe to index
+     */
+    void index(Recipe recipe);
+
+    /**
+     * This method removes a recipe from the index. The id is remembered for a while, so a write of the recipe that
+     * reaches the index after its deletion is ignored.
+     *
+     * @param id The ID of the recipe to remove
+     */
+    void remove(long id);
+}
@@ -0,0 +1,217 @@
+package io.github.dankoller.springrecipe.search;
+
+import io.github.dankoller.springrecipe.entity.Recipe;
+import io.github.dankoller.springrecipe.persistence.RecipeRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * This class is an in-process inverted index over the name, description and ingredients of all recipes. It is
+ * rebuilt from the database at startup and kept up to date by the RecipeService write methods.
+ */
+@Component
+@SuppressWarnings("unused")
+public class RecipeSearchIndex implements RecipeIndex {
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    // Field weights used for ranking (a match in the name counts more than one in the description)
+    private static final int NAME_WEIGHT = 3;
+    private static final int INGREDIENT_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    // Bonus for a query token matching a term exactly instead of only as a prefix
+    private static final int EXACT_MATCH_BONUS = 1;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Document> documents = new HashMap<>();
+    // Sorted term dictionary, so prefix queries are a range scan
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private final RecipeTombstones tombstones = new RecipeTombstones();
+
+    /**
+     * This method rebuilds the index from the repository at startup.
+     */
+    @PostConstruct
+    public void rebuild() {
+        rebuild(recipeRepository.findAll());
+    }
+
+    /**
+     * This method replaces the content of the index with the given recipes.
+     *
+     * @param recipes The recipes to index
+     */
+    public void rebuild(Iterable<Recipe> recipes) {
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            postings.clear();
+            for (Recipe recipe : recipes) {
+                add(recipe);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method adds a recipe to the index or replaces the previously indexed version of it. Versions older than
+     * the indexed one and recipes removed since are ignored, so a write that finishes after a later one doesn't bring
+     * back its content.
+     *
+     * @param recipe The recipe to index
+     */
+    @Override
+    public void index(Recipe recipe) {
+        lock.writeLock().lock();
+        try {
+            if (tombstones.contains(recipe.getId())) {
+                return;
+            }
+            Document indexed = documents.get(recipe.getId());
+            if (indexed != null && indexed.recipe().getVersion() > recipe.getVersion()) {
+                return;
+            }
+            removeDocument(recipe.getId());
+            add(recipe);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method removes a recipe from the index and ignores later writes of it for a while.
+     *
+     * @param id The ID of the recipe to remove
+     */
+    @Override
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            tombstones.add(id);
+            removeDocument(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method searches the index. Every token of the query has to match a term of the recipe, either exactly or
+     * as a prefix.
+     *
+     * @param query The search query
+     * @return The matching recipes ranked by relevance and then by date (newest first)
+     */
+    public List<Recipe> search(String query) {
+        Set<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Map<Long, Integer> scores = null;
+            for (String token : queryTokens) {
+                Map<Long, Integer> tokenScores = scoreToken(token);
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    // All tokens have to match
+                    scores.keySet().retainAll(tokenScores.keySet());
+                    scores.replaceAll((id, score) -> score + tokenScores.get(id));
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+            Map<Long, Integer> finalScores = scores;
+            return finalScores.keySet().stream()
+                    .map(documents::get)
+                    .sorted(Comparator.<Document>comparingInt(document -> finalScores.get(document.recipe().getId()))
+                            .reversed()
+                            .thenComparing(document -> document.recipe().getDate(),
+                                    Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+                            .thenComparing(document -> document.recipe().getId(), Comparator.reverseOrder()))
+                    .map(Document::recipe)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * A helper method to score all recipes that contain a term starting with the given token.
+     */
+    private Map<Long, Integer> scoreToken(String token) {
+        Map<Long, Integer> scores = new HashMap<>();
+        for (Map.Entry<String, Map<Long, Integer>> entry
+                : postings.subMap(token, true, token + Character.MAX_VALUE, true).entrySet()) {
+            int bonus = entry.getKey().equals(token) ? EXACT_MATCH_BONUS : 0;
+            entry.getValue().forEach((id, weight) -> scores.merge(id, weight + bonus, Math::max));
+        }
+        return scores;
+    }
+
+    /**
+     * A helper method to add a recipe to the index. The caller has to hold the write lock.
+     */
+    private void add(Recipe recipe) {
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, recipe.getName(), NAME_WEIGHT);
+        addTerms(terms, recipe.getDescription(), DESCRIPTION_WEIGHT);
+        if (recipe.getIngredients() != null) {
+            for (String ingredient : recipe.getIngredients()) {
+                addTerms(terms, ingredient, INGREDIENT_WEIGHT);
+            }
+        }
+        documents.put(recipe.getId(), new Document(recipe, terms));
+        terms.forEach((term, weight) -> postings.computeIfAbsent(term, key -> new HashMap<>())
+                .put(recipe.getId(), weight));
+    }
+
+    /**
+     * A helper method to remove a recipe from the index. The caller has to hold the write lock.
+     */
+    private void removeDocument(long id) {
+        Document document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        for (String term : document.terms().keySet()) {
+            Map<Long, Integer> posting = postings.get(term);
+            posting.remove(id);
+            if (posting.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    private static void addTerms(Map<String, Integer> terms, String text, int weight) {
+        for (String token : tokenize(text)) {
+            terms.merge(token, weight, Integer::sum);
+        }
+    }
+
+    private static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private record Document(Recipe recipe, Map<String, Integer> terms) {
+    }
+}
@@ -0,0 +1,39 @@
+package io.github.dankoller.springrecipe.search;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+
+/**
+ * This class remembers the ids of the recipes an index removed, so a write that reaches the index after the deletion
+ * of its recipe doesn't bring the recipe back. Recipe ids are taken from a sequence and never reused, so every later
+ * write of a removed id is a late one, whatever its version. The ids are only kept for a limited time.
+ */
+final class RecipeTombstones {
+    // Far longer than a write takes from its commit to the index
+    private static final Duration RETENTION = Duration.ofMinutes(10);
+
+    private final Cache<Long, Boolean> removed = Caffeine.newBuilder()
+            .expireAfterWrite(RETENTION)
+            .build();
+
+    /**
+     * This method records the removal of a recipe.
+     *
+     * @param id The ID of the removed recipe
+     */
+    void add(long id) {
+        removed.put(id, Boolean.TRUE);
+    }
+
+    /**
+     * This method checks if a recipe was removed recently.
+     *
+     * @param id The ID of the recipe
+     * @return True if the recipe was removed, false otherwise
+     */
+    boolean contains(long id) {
+        return removed.getIfPresent(id) != null;
+    }
+}
@@ -0,0 +1,57 @@
+package io.github.dankoller.springrecipe.service;
+
+import io.github.dankoller.springrecipe.auth.CachingAuthenticationProvider;
+import io.github.dankoller.springrecipe.auth.TokenService;
+import io.github.dankoller.springrecipe.persistence.UserRepository;
+import io.github.dankoller.springrecipe.request.LoginRequest;
+import io.github.dankoller.springrecipe.request.RefreshRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.stereotype.Service;
+
+@Service
+@SuppressWarnings("unused")
+public class AuthService {
+    @Autowired
+    private CachingAuthenticationProvider cachingAuthenticationProvider;
+    @Autowired
+    private TokenService tokenService;
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * This method verifies the credentials of a user once and issues tokens for the following requests.
+     *
+     * @param request The login request
+     * @return A ResponseEntity containing the access and refresh token, or 401 if the credentials are invalid
+     */
+    public ResponseEntity<?> login(LoginRequest request) {
+        Authentication authentication;
+        try {
+            authentication = cachingAuthenticationProvider.authenticate(
+                    new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword()));
+        } catch (AuthenticationException e) {
+            return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+        }
+        // The name is the email as stored, which the ownership checks compare against
+        return new ResponseEntity<>(tokenService.issue(authentication.getName()), HttpStatus.OK);
+    }
+
+    /**
+     * This method exchanges a valid refresh token for new tokens, as long as the user still exists.
+     *
+     * @param request The refresh request
+     * @return A ResponseEntity containing the new access and refresh token, or 401 if the refresh token is invalid
+     */
+    public ResponseEntity<?> refresh(RefreshRequest request) {
+        String email = tokenService.verify(request.getRefreshToken(), TokenService.REFRESH);
+        if (email == null || userRepository.findByEmailIgnoreCase(email) == null) {
+            return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+        }
+        return new ResponseEntity<>(tokenService.issue(email), HttpStatus.OK);
+    }
+}
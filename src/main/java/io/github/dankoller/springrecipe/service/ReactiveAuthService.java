@@ -0,0 +1,44 @@
+package io.github.dankoller.springrecipe.service;
+
+import io.github.dankoller.springrecipe.request.LoginRequest;
+import io.github.dankoller.springrecipe.request.RefreshRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * This class is the reactive counterpart of {@link AuthService}. Logins verify the password and refreshes look up
+ * the user, so both run on the JDBC scheduler.
+ */
+@Service
+@Profile("reactive")
+@SuppressWarnings("unused")
+public class ReactiveAuthService {
+    @Autowired
+    private AuthService authService;
+    @Autowired
+    private Scheduler jdbcScheduler;
+
+    /**
+     * This method verifies the credentials of a user once and issues tokens for the following requests.
+     *
+     * @param request The login request
+     * @return A Mono of the ResponseEntity containing the tokens
+     */
+    public Mono<ResponseEntity<?>> login(LoginRequest request) {
+        return Mono.<ResponseEntity<?>>fromCallable(() -> authService.login(request)).subscribeOn(jdbcScheduler);
+    }
+
+    /**
+     * This method exchanges a valid refresh token for new tokens.
+     *
+     * @param request The refresh request
+     * @return A Mono of the ResponseEntity containing the new tokens
+     */
+    public Mono<ResponseEntity<?>> refresh(RefreshRequest request) {
+        return Mono.<ResponseEntity<?>>fromCallable(() -> authService.refresh(request)).subscribeOn(jdbcScheduler);
+    }
+}
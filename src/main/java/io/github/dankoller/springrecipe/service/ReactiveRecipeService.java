@@ -0,0 +1,261 @@
+package io.github.dankoller.springrecipe.service;
+
+import io.github.dankoller.springrecipe.changes.RecipeChange;
+import io.github.dankoller.springrecipe.request.ConditionalRequest;
+import io.github.dankoller.springrecipe.request.RecipeRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class is the reactive counterpart of {@link RecipeService}, {@link RecipeImportService} and
+ * {@link RecipeExportService}. It delegates to them on the JDBC scheduler (exports on their own), so both web stacks
+ * share the same validation, caching, search index and status codes.
+ */
+@Service
+@Profile("reactive")
+@SuppressWarnings("unused")
+public class ReactiveRecipeService {
+    @Autowired
+    private RecipeService recipeService;
+    @Autowired
+    private RecipeImportService recipeImportService;
+    @Autowired
+    private RecipeExportService recipeExportService;
+    @Autowired
+    private Scheduler jdbcScheduler;
+    @Autowired
+    private Scheduler exportScheduler;
+    @Value("${recipes.import.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * This method is used to post a new recipe.
+     *
+     * @param username      The username of the user posting the recipe (used to set the author)
+     * @param recipeRequest The recipe request
+     * @return A Mono of the ResponseEntity containing the id of the new recipe
+     */
+    public Mono<ResponseEntity<?>> postRecipe(String username, RecipeRequest recipeRequest) {
+        return blocking(() -> recipeService.postRecipe(username, recipeRequest));
+    }
+
+    /**
+     * This method is used to get a recipe by its id, honoring the conditional headers of the request.
+     *
+     * @param id       The id of the recipe
+     * @param exchange The exchange, used to evaluate the If-None-Match and If-Modified-Since headers
+     * @return A Mono of the ResponseEntity containing the recipe
+     */
+    public Mono<ResponseEntity<byte[]>> getRecipe(long id, ServerWebExchange exchange) {
+        return blocking(() -> recipeService.getRecipe(id, ConditionalRequest.of(exchange)));
+    }
+
+    /**
+     * This method is used to delete a recipe by its id.
+     *
+     * @param username The username of the user deleting the recipe
+     * @param id       The id of the recipe
+     * @return A Mono of the ResponseEntity with the status of the deletion
+     */
+    public Mono<ResponseEntity<?>> deleteRecipe(String username, long id) {
+        return blocking(() -> recipeService.deleteRecipe(username, id));
+    }
+
+    /**
+     * This method is used to update a recipe by its id.
+     *
+     * @param username      The username of the user updating the recipe
+     * @param id            The id of the recipe
+     * @param recipeRequest The recipe request
+     * @return A Mono of the ResponseEntity with the status of the update
+     */
+    public Mono<ResponseEntity<?>> updateRecipe(String username, long id, RecipeRequest recipeRequest) {
+        return blocking(() -> recipeService.updateRecipe(username, id, recipeRequest));
+    }
+
+    /**
+     * This method is used to search recipes by category, name or ingredients, optionally paged.
+     *
+     * @param category    The category to search for
+     * @param name        The name to search for
+     * @param ingredients The comma-separated ingredients to search for
+     * @param match       How many of the ingredients a recipe has to use: "all", "any" or a number (may be null)
+     * @param page        The zero-based page number (may be null)
+     * @param size        The page size (may be null)
+     * @param after       The cursor of the previous page (may be null)
+     * @param exchange    The exchange, used to evaluate the If-None-Match header
+     * @return A Mono of the ResponseEntity containing the recipes
+     */
+    public Mono<ResponseEntity<?>> getRecipeByParam(String category, String name, String ingredients, String match,
+                                                    Integer page, Integer size, String after,
+                                                    ServerWebExchange exchange) {
+        return blocking(() -> recipeService.getRecipeByParam(category, name, ingredients, match, page, size, after,
+                ConditionalRequest.of(exchange)));
+    }
+
+    /**
+     * This method is used to list the categories with the number of their recipes. They are counted in memory, so
+     * this doesn't need the JDBC scheduler.
+     *
+     * @param top The maximum number of categories (may be null)
+     * @return A Mono of the ResponseEntity containing the categories
+     */
+    public Mono<ResponseEntity<?>> getCategories(Integer top) {
+        return Mono.fromSupplier(() -> recipeService.getCategories(top));
+    }
+
+    /**
+     * This method is used to subscribe to the created, updated and deleted recipes. The feed doesn't block, so it
+     * doesn't need the JDBC scheduler.
+     *
+     * @param lastEventId The id of the last event the client received (may be null)
+     * @return The changes as server-sent events
+     */
+    public Flux<ServerSentEvent<RecipeChange>> getChanges(Long lastEventId) {
+        return recipeService.getChanges(lastEventId);
+    }
+
+    /**
+     * This method imports recipes from a stream of newline-delimited JSON lines. The lines are consumed in chunks,
+     * so the body is never held in memory as a whole and a slow database slows down reading the body.
+     *
+     * @param username The username of the user importing the recipes (used to set the author)
+     * @param lines    The lines of the request body
+     * @return A Mono of the ResponseEntity containing the import report, or 401 if the user doesn't exist anymore
+     */
+    public Mono<ResponseEntity<?>> importRecipes(String username, Flux<String> lines) {
+        // Empty if the user doesn't exist anymore
+        return blocking(() -> recipeImportService.startImport(username))
+                .flatMap(recipeImport -> lines
+                        .buffer(chunkSize)
+                        .concatMap(chunk -> blocking(() -> {
+                            chunk.forEach(recipeImport::accept);
+                            return chunk.size();
+                        }))
+                        .then(blocking(recipeImport::finish)))
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.UNAUTHORIZED));
+    }
+
+    /**
+     * This method exports all recipes matching the optional filters as newline-delimited JSON. The recipes are read
+     * on the export scheduler and emitted only as fast as the client consumes them.
+     *
+     * @param category The category to export (may be null)
+     * @param from     The inclusive lower bound of the recipe date (may be null)
+     * @param to       The exclusive upper bound of the recipe date (may be null)
+     * @return A Mono of the ResponseEntity streaming the recipes, or 400 if the date range is invalid
+     */
+    public Mono<ResponseEntity<Flux<DataBuffer>>> exportRecipes(String category, LocalDateTime from,
+                                                                LocalDateTime to) {
+        if (!RecipeExportService.isValidDateRange(from, to)) {
+            return Mono.just(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        }
+        Flux<DataBuffer> body = Flux.<DataBuffer>create(sink -> {
+            Demand demand = new Demand();
+            sink.onRequest(demand::add);
+            sink.onDispose(demand::cancel);
+            try {
+                recipeExportService.writeRecipes(category, from, to, line -> {
+                    demand.await();
+                    byte[] bytes = Arrays.copyOf(line, line.length + 1);
+                    bytes[line.length] = '\n';
+                    sink.next(DefaultDataBufferFactory.sharedInstance.wrap(bytes));
+                });
+                sink.complete();
+            } catch (CancellationException e) {
+                // The client went away, the transaction is rolled back by the exception
+            } catch (RuntimeException e) {
+                sink.error(e);
+            }
+        }).subscribeOn(exportScheduler);
+        return Mono.just(ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body));
+    }
+
+    /**
+     * A helper method to run a blocking call on the JDBC scheduler.
+     */
+    private <T> Mono<T> blocking(Callable<T> callable) {
+        return Mono.fromCallable(callable).subscribeOn(jdbcScheduler);
+    }
+
+    /**
+     * The recipes the client of an export requested and hasn't received yet. The exporting thread blocks until the
+     * client requests more recipes, so the export doesn't buffer recipes the client can't take yet. It's woken up by
+     * the request instead of polling for it.
+     */
+    private static final class Demand {
+        // A lock instead of a monitor, so waiting doesn't pin a virtual thread
+        private final Lock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private long requested;
+        private boolean cancelled;
+
+        private void add(long n) {
+            lock.lock();
+            try {
+                requested = Operators.addCap(requested, n);
+                changed.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void cancel() {
+            lock.lock();
+            try {
+                cancelled = true;
+                changed.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * This method blocks until a recipe may be emitted and takes it from the demand.
+         *
+         * @throws CancellationException If the client cancelled the export
+         */
+        private void await() {
+            lock.lock();
+            try {
+                while (requested == 0 && !cancelled) {
+                    changed.await();
+                }
+                if (cancelled) {
+                    throw new CancellationException("Export cancelled by the client");
+                }
+                if (requested != Long.MAX_VALUE) {
+                    requested--;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Export interrupted");
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package io.github.dankoller.springrecipe.service;
+
+import io.github.dankoller.springrecipe.request.RegistrationRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * This class is the reactive counterpart of {@link UserService}. Registrations are hashed and stored on the password
+ * hashing pool, so they never block the event loop.
+ */
+@Service
+@Profile("reactive")
+@SuppressWarnings("unused")
+public class ReactiveUserService {
+    @Autowired
+    private UserService userService;
+
+    /**
+     * This method handles the registration of a new user.
+     *
+     * @param request The registration request
+     * @return A Mono of the ResponseEntity with the result of the registration
+     */
+    public Mono<ResponseEntity<?>> register(RegistrationRequest request) {
+        return Mono.fromFuture(() -> userService.register(request));
+    }
+}
@@ -0,0 +1,151 @@
+package io.github.dankoller.springrecipe.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.github.dankoller.springrecipe.entity.Recipe;
+import io.github.dankoller.springrecipe.persistence.RecipeRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Service
+@SuppressWarnings("unused")
+public class RecipeExportService {
+    // Number of recipes loaded at once, after which the persistence context is cleared and the output is flushed
+    private static final int WINDOW_SIZE = 500;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * This method exports all recipes matching the optional filters as newline-delimited JSON. The ids of the
+     * recipes are streamed from a database cursor and the recipes are loaded and written per window of ids, so the
+     * memory used doesn't depend on the number of recipes.
+     *
+     * @param category The category to export (may be null)
+     * @param from     The inclusive lower bound of the recipe date (may be null)
+     * @param to       The exclusive upper bound of the recipe date (may be null)
+     * @return A ResponseEntity streaming the recipes, or 400 if the date range is invalid
+     */
+    public ResponseEntity<StreamingResponseBody> exportRecipes(String category, LocalDateTime from, LocalDateTime to) {
+        if (!isValidDateRange(from, to)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        StreamingResponseBody body = outputStream -> writeRecipes(category, from, to, LineWriter.of(outputStream));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * This method writes all recipes matching the optional filters, serialized as JSON, to the given writer within a
+     * read-only transaction. It blocks until all recipes are written.
+     *
+     * @param category   The category to export (may be null)
+     * @param from       The inclusive lower bound of the recipe date (may be null)
+     * @param to         The exclusive upper bound of the recipe date (may be null)
+     * @param lineWriter The writer receiving one serialized recipe per call
+     */
+    public void writeRecipes(String category, LocalDateTime from, LocalDateTime to, LineWriter lineWriter) {
+        String categoryKey = Recipe.toCategoryKey(category);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.executeWithoutResult(status -> streamRecipes(categoryKey, from, to, lineWriter));
+    }
+
+    /**
+     * This method checks if the optional date range of an export is valid.
+     *
+     * @param from The inclusive lower bound (may be null)
+     * @param to   The exclusive upper bound (may be null)
+     * @return True if the range is valid, false otherwise
+     */
+    public static boolean isValidDateRange(LocalDateTime from, LocalDateTime to) {
+        return from == null || to == null || from.isBefore(to);
+    }
+
+    /**
+     * A helper method to write the recipes to the writer. It has to be called within a transaction.
+     */
+    private void streamRecipes(String categoryKey, LocalDateTime from, LocalDateTime to, LineWriter lineWriter) {
+        ObjectWriter writer = objectMapper.writerFor(Recipe.class);
+        try (Stream<Long> ids = recipeRepository.streamIds(categoryKey, from, to)) {
+            Iterator<Long> iterator = ids.iterator();
+            List<Long> window = new ArrayList<>(WINDOW_SIZE);
+            while (iterator.hasNext()) {
+                window.add(iterator.next());
+                if (window.size() == WINDOW_SIZE || !iterator.hasNext()) {
+                    writeWindow(window, writer, lineWriter);
+                    window.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A helper method to load a window of recipes in bulk and write them to the writer. The written recipes are
+     * detached afterwards, so the persistence context doesn't grow.
+     */
+    private void writeWindow(List<Long> window, ObjectWriter writer, LineWriter lineWriter) throws IOException {
+        for (Recipe recipe : recipeRepository.findAllByIdInOrderById(window)) {
+            lineWriter.write(writer.writeValueAsBytes(recipe));
+        }
+        entityManager.clear();
+        lineWriter.flush();
+    }
+
+    /**
+     * The receiver of the exported recipes, one serialized recipe per line.
+     */
+    public interface LineWriter {
+        void write(byte[] line) throws IOException;
+
+        default void flush() throws IOException {
+        }
+
+        /**
+         * This method creates a writer that terminates every line with a newline.
+         *
+         * @param outputStream The stream to write to
+         * @return The writer
+         */
+        static LineWriter of(OutputStream outputStream) {
+            return new LineWriter() {
+                @Override
+                public void write(byte[] line) throws IOException {
+                    outputStream.write(line);
+                    outputStream.write('\n');
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    outputStream.flush();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package io.github.dankoller.springrecipe.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.dankoller.springrecipe.changes.RecipeChange;
+import io.github.dankoller.springrecipe.changes.RecipeChangeFeed;
+import io.github.dankoller.springrecipe.cluster.CacheInvalidationOutbox;
+import io.github.dankoller.springrecipe.entity.Recipe;
+import io.github.dankoller.springrecipe.entity.user.User;
+import io.github.dankoller.springrecipe.persistence.RecipeRepository;
+import io.github.dankoller.springrecipe.persistence.UserRepository;
+import io.github.dankoller.springrecipe.request.RecipeRequest;
+import io.github.dankoller.springrecipe.search.RecipeIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@SuppressWarnings("unused")
+public class RecipeImportService {
+    // Only the first errors are reported in detail, so the report stays small for broken files
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private RecipeService recipeService;
+    @Autowired
+    private List<RecipeIndex> recipeIndexes;
+    @Autowired
+    private RecipeChangeFeed recipeChangeFeed;
+    @Autowired
+    private CacheInvalidationOutbox cacheInvalidationOutbox;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Value("${recipes.import.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * This method imports recipes from a stream of newline-delimited JSON recipe requests. The lines are validated
+     * like single recipes and inserted in batches, every chunk of recipes in its own transaction.
+     *
+     * @param username The username of the user importing the recipes (used to set the author)
+     * @param body     The NDJSON stream, one recipe request per line
+     * @return A ResponseEntity containing the number of imported and failed recipes and an error per failed line,
+     * or 401 if the user doesn't exist anymore
+     * @throws IOException If the stream can't be read
+     */
+    public ResponseEntity<?> importRecipes(String username, InputStream body) throws IOException {
+        RecipeImport recipeImport = startImport(username);
+        if (recipeImport == null) {
+            return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                recipeImport.accept(line);
+            }
+        }
+        return recipeImport.finish();
+    }
+
+    /**
+     * This method starts an import that is fed line by line, for callers that don't read the lines from an
+     * InputStream. The lines have to be passed sequentially, but not necessarily from the same thread.
+     *
+     * @param username The username of the user importing the recipes (used to set the author)
+     * @return The import to pass the lines to, or null if the user doesn't exist anymore
+     */
+    public RecipeImport startImport(String username) {
+        // Resolve the author once for all recipes, from the primary database
+        User author = transactionTemplate.execute(status -> userRepository.findByEmailIgnoreCase(username));
+        // Deleted after its access token was issued
+        return author == null ? null : new RecipeImport(author);
+    }
+
+    /**
+     * A helper method to insert a chunk of recipes and report the result of its lines.
+     */
+    private void saveChunk(List<Recipe> chunk, List<Integer> chunkLines, ImportReport report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        saveRecipes(chunk, chunkLines, report);
+        chunk.clear();
+        chunkLines.clear();
+    }
+
+    /**
+     * A helper method to insert recipes in a single transaction. If the transaction fails, it is rolled back and the
+     * recipes are retried in halves, so only the lines that fail on their own are reported as failed and the others
+     * are still imported.
+     */
+    private void saveRecipes(List<Recipe> recipes, List<Integer> lines, ImportReport report) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                recipeRepository.saveAll(recipes);
+                cacheInvalidationOutbox.recipesChanged(recipes, RecipeChange.CREATED);
+                // Send the batched inserts and detach the recipes, so the persistence context doesn't grow
+                entityManager.flush();
+                entityManager.clear();
+            });
+        } catch (DataAccessException | PersistenceException | TransactionSystemException e) {
+            // The flush of the entity manager throws untranslated persistence exceptions, and a failed commit
+            // surfaces as TransactionSystemException
+            if (recipes.size() == 1) {
+                report.fail(lines.get(0), NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+                return;
+            }
+            // The failed inserts assigned ids and collection wrappers to the recipes, so fresh copies are retried
+            List<Recipe> copies = recipes.stream().map(RecipeImportService::copy).toList();
+            int half = copies.size() / 2;
+            saveRecipes(copies.subList(0, half), lines.subList(0, half), report);
+            saveRecipes(copies.subList(half, copies.size()), lines.subList(half, lines.size()), report);
+            return;
+        }
+        recipeIndexes.forEach(index -> recipes.forEach(index::index));
+        recipes.forEach(recipeChangeFeed::created);
+        report.imported += recipes.size();
+    }
+
+    /**
+     * A helper method to create an unsaved copy of a recipe.
+     */
+    private static Recipe copy(Recipe recipe) {
+        return new Recipe(
+                recipe.getName(),
+                recipe.getCategory(),
+                recipe.getDate(),
+                recipe.getDescription(),
+                recipe.getIngredients().toArray(String[]::new),
+                recipe.getDirections().toArray(String[]::new),
+                recipe.getAuthor());
+    }
+
+    /**
+     * A running import. Valid lines are collected and saved whenever a chunk is full.
+     */
+    public class RecipeImport {
+        private final User author;
+        private final ImportReport report = new ImportReport();
+        private final List<Recipe> chunk = new ArrayList<>(chunkSize);
+        private final List<Integer> chunkLines = new ArrayList<>(chunkSize);
+        private int lineNumber;
+
+        private RecipeImport(User author) {
+            this.author = author;
+        }
+
+        /**
+         * This method parses and validates the next line of the import.
+         *
+         * @param line The line, one recipe request as JSON
+         */
+        public void accept(String line) {
+            lineNumber++;
+            if (line.isBlank()) {
+                return;
+            }
+            RecipeRequest recipeRequest;
+            try {
+                recipeRequest = objectMapper.readValue(line, RecipeRequest.class);
+            } catch (JsonProcessingException e) {
+                report.fail(lineNumber, e.getOriginalMessage());
+                return;
+            }
+            if (recipeRequest == null || !recipeService.isValidRecipeRequest(recipeRequest)) {
+                report.fail(lineNumber, "Invalid recipe");
+                return;
+            }
+            chunk.add(new Recipe(
+                    recipeRequest.getName(),
+                    recipeRequest.getCategory(),
+                    LocalDateTime.now(),
+                    recipeRequest.getDescription(),
+                    recipeRequest.getIngredients(),
+                    recipeRequest.getDirections(),
+                    author));
+            chunkLines.add(lineNumber);
+            if (chunk.size() >= chunkSize) {
+                saveChunk(chunk, chunkLines, report);
+            }
+        }
+
+        /**
+         * This method saves the remaining recipes and completes the import.
+         *
+         * @return A ResponseEntity containing the number of imported and failed recipes and an error per failed line
+         */
+        public ResponseEntity<?> finish() {
+            saveChunk(chunk, chunkLines, report);
+            return new ResponseEntity<>(Map.of(
+                    "imported", report.imported,
+                    "failed", report.failed,
+                    "errors", report.errors), HttpStatus.OK);
+        }
+    }
+
+    /**
+     * The per-line result of an import.
+     */
+    private static class ImportReport {
+        private final List<Map<String, Object>> errors = new ArrayList<>();
+        private int imported;
+        private int failed;
+
+        private void fail(int lineNumber, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(Map.of("line", lineNumber, "error", String.valueOf(message)));
+            }
+        }
+    }
+}
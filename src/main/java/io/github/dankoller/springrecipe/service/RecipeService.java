@@ -1,32 +1,99 @@
 package io.github.dankoller.springrecipe.service;
 
+import io.github.dankoller.springrecipe.changes.RecipeChange;
+import io.github.dankoller.springrecipe.changes.RecipeChangeFeed;
+import io.github.dankoller.springrecipe.cluster.CacheInvalidationOutbox;
 import io.github.dankoller.springrecipe.entity.Recipe;
+import io.github.dankoller.springrecipe.entity.user.User;
 import io.github.dankoller.springrecipe.persistence.RecipeRepository;
+import io.github.dankoller.springrecipe.persistence.RecipeVersion;
 import io.github.dankoller.springrecipe.persistence.UserRepository;
+import io.github.dankoller.springrecipe.render.RenderedRecipe;
+import io.github.dankoller.springrecipe.render.RenderedRecipeCache;
+import io.github.dankoller.springrecipe.request.ConditionalRequest;
+import io.github.dankoller.springrecipe.request.RecipeCursor;
 import io.github.dankoller.springrecipe.request.RecipeRequest;
+import io.github.dankoller.springrecipe.search.CategoryFacetIndex;
+import io.github.dankoller.springrecipe.search.IngredientIndex;
+import io.github.dankoller.springrecipe.search.RecipeIndex;
+import io.github.dankoller.springrecipe.search.RecipeSearchIndex;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
 
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+
+import static io.github.dankoller.springrecipe.config.CacheConfiguration.RECIPES_CACHE;
 
 @Service
 @SuppressWarnings("unused")
 public class RecipeService {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String NEXT_PAGE_HEADER = "X-Next-Page";
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int DEFAULT_TOP_CATEGORIES = 100;
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "date", "id");
+
     @Autowired
     private RecipeRepository recipeRepository;
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private RecipeSearchIndex recipeSearchIndex;
+    @Autowired
+    private CategoryFacetIndex categoryFacetIndex;
+    @Autowired
+    private IngredientIndex ingredientIndex;
+    // All in-memory indexes (search, categories), updated after every write
+    @Autowired
+    private List<RecipeIndex> recipeIndexes;
+    @Autowired
+    private RenderedRecipeCache renderedRecipeCache;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private RecipeChangeFeed recipeChangeFeed;
+    @Autowired
+    private CacheInvalidationOutbox cacheInvalidationOutbox;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
     /**
      * This method is used to create a new recipe from a RecipeRequest object.
      *
      * @param username      The username of the user creating the recipe (used to set the author)
      * @param recipeRequest The RecipeRequest object containing the recipe information
-     * @return A ResponseEntity containing the ID of the newly created recipe
+     * @return A ResponseEntity containing the ID of the newly created recipe, 400 if the recipe is invalid, or 401 if
+     * the user doesn't exist anymore
      */
     public ResponseEntity<?> postRecipe(String username, RecipeRequest recipeRequest) {
         if (isValidRecipeRequest(recipeRequest)) {
@@ -37,8 +104,25 @@ public class RecipeService {
                     recipeRequest.getDescription(),
                     recipeRequest.getIngredients(),
                     recipeRequest.getDirections(),
-                    userRepository.findByEmailIgnoreCase(username));
-            recipeRepository.save(recipe);
+                    null);
+            // The invalidation for the other instances is committed with the recipe
+            Boolean saved = transactionTemplate.execute(status -> {
+                // Read within the write transaction, i.e. from the primary database
+                User author = userRepository.findByEmailIgnoreCase(username);
+                if (author == null) {
+                    // Deleted after its access token was issued
+                    return false;
+                }
+                recipe.setAuthor(author);
+                recipeRepository.save(recipe);
+                cacheInvalidationOutbox.recipeChanged(recipe.getId(), RecipeChange.CREATED);
+                return true;
+            });
+            if (!Boolean.TRUE.equals(saved)) {
+                return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+            }
+            recipeIndexes.forEach(index -> index.index(recipe));
+            recipeChangeFeed.created(recipe);
             return new ResponseEntity<>(Map.of("id", recipe.getId()), HttpStatus.OK);
         } else {
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
@@ -46,18 +130,58 @@ public class RecipeService {
     }
 
     /**
-     * This method is used to get a recipe by its ID.
+     * This method is used to get a recipe by its ID. The response carries an ETag derived from the version of the
+     * recipe and its last modification time, so conditional requests are answered with 304. If the recipe isn't
+     * cached, conditional requests are checked against a version lookup before the recipe is loaded. The JSON of the
+     * recipe is rendered once per version and written from the rendered bytes (gzip compressed if the client accepts
+     * it and the recipe is large enough).
+     * <p>
+     * Cache misses are read in read-write transactions, so they come from the primary database even if a replica is
+     * configured: a lagging replica may still return an older version or a deleted recipe, which would then be cached.
      *
-     * @param id The ID of the recipe to get
-     * @return A ResponseEntity containing the recipe if it exists, or 404 if it doesn't
+     * @param id      The ID of the recipe to get
+     * @param request The request, used to evaluate the If-None-Match, If-Modified-Since and Accept-Encoding headers
+     * @return A ResponseEntity containing the JSON of the recipe if it exists, 304 if it wasn't modified, or 404 if
+     * it doesn't exist
      */
-    public ResponseEntity<Recipe> getRecipe(long id) {
-        if (!recipeRepository.existsById(id)) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    public ResponseEntity<byte[]> getRecipe(long id, ConditionalRequest request) {
+        RenderedRecipe rendered = renderedRecipeCache.get(id);
+        if (rendered == null) {
+            Cache cache = cacheManager.getCache(RECIPES_CACHE);
+            Recipe cached = cache == null ? null : cache.get(id, Recipe.class);
+            if (cached == null && request.isConditional()) {
+                Optional<RecipeVersion> version =
+                        transactionTemplate.execute(status -> recipeRepository.findVersionById(id));
+                if (version.isEmpty()) {
+                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                }
+                if (request.checkNotModified(eTag(id, version.get().version()),
+                        toEpochMilli(version.get().lastModified()))) {
+                    return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+                }
+            }
+            // Single (cached) lookup
+            Optional<Recipe> recipe = cached != null
+                    ? Optional.of(cached)
+                    : transactionTemplate.execute(status -> recipeRepository.findById(id));
+            if (recipe.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            rendered = renderedRecipeCache.render(recipe.get());
+        }
+        // Sets the ETag and Last-Modified headers of the response
+        if (request.checkNotModified(eTag(id, rendered.version()), toEpochMilli(rendered.lastModified()))) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
         }
-        Optional<Recipe> recipe = recipeRepository.findById(id);
-        return recipe.map(value -> new ResponseEntity<>(value, HttpStatus.OK))
-                .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        if (rendered.gzip() != null
+                && RenderedRecipeCache.acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            return new ResponseEntity<>(rendered.gzip(), headers, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(rendered.json(), headers, HttpStatus.OK);
     }
 
     /**
@@ -69,18 +193,27 @@ public class RecipeService {
      * or 404 if the recipe doesn't exist
      */
     public ResponseEntity<?> deleteRecipe(String username, long id) {
-        Recipe recipe = recipeRepository.findById(id).orElse(null);
-        // If the recipe doesn't exist, return 404
-        if (recipe == null) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-        // If the recipe exists, but the user is not the owner, return 403
-        if (!recipe.getAuthor().getEmail().equals(username)) {
-            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        // Delete the recipe if the user is the owner
+        Boolean deleted = transactionTemplate.execute(status -> {
+            if (recipeRepository.deleteByIdAndAuthorEmail(id, username) == 0) {
+                return false;
+            }
+            cacheInvalidationOutbox.recipeChanged(id, RecipeChange.DELETED);
+            return true;
+        });
+        if (Boolean.TRUE.equals(deleted)) {
+            // Evicted again after the commit, a concurrent read may have cached the recipe in the meantime
+            Cache cache = cacheManager.getCache(RECIPES_CACHE);
+            if (cache != null) {
+                cache.evict(id);
+            }
+            recipeIndexes.forEach(index -> index.remove(id));
+            renderedRecipeCache.evict(id);
+            recipeChangeFeed.deleted(id);
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         }
-        // Delete the recipe
-        recipeRepository.deleteById(id);
-        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        // If the recipe exists, but the user is not the owner, return 403, otherwise 404
+        return ownershipFailure(id);
     }
 
     /**
@@ -90,63 +223,315 @@ public class RecipeService {
      * @param id            The ID of the recipe to update
      * @param recipeRequest The RecipeRequest object containing the updated recipe information
      * @return A ResponseEntity containing 204 if the recipe was updated, 403 if the user is not the owner,
-     * 404 if the recipe doesn't exist, or 400 if the recipe is invalid
+     * 404 if the recipe doesn't exist, 400 if the recipe is invalid, or 409 if it was updated concurrently
      */
     public ResponseEntity<?> updateRecipe(String username, long id, RecipeRequest recipeRequest) {
-        Recipe recipe = recipeRepository.findById(id).orElse(null);
-        // If the recipe doesn't exist, return 404
-        if (recipe == null) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        boolean isValid = isValidRecipeRequest(recipeRequest);
+        Recipe updated;
+        try {
+            // The recipe is loaded (from the primary database) and changed in one transaction, so the update is
+            // flushed from the managed entity and checked against the version that was loaded
+            updated = transactionTemplate.execute(status -> {
+                // Load the recipe only if the user is the owner
+                Recipe recipe = recipeRepository.findRecipeByIdAndAuthorEmail(id, username).orElse(null);
+                if (recipe == null || !isValid) {
+                    return recipe;
+                }
+                // Update the recipe
+                recipe.setName(recipeRequest.getName());
+                recipe.setCategory(recipeRequest.getCategory());
+                recipe.setDescription(recipeRequest.getDescription());
+                recipe.setIngredients(recipeRequest.getIngredients());
+                recipe.setDirections(recipeRequest.getDirections());
+                recipe.setLastModified(LocalDateTime.now());
+                cacheInvalidationOutbox.recipeChanged(id, RecipeChange.UPDATED);
+                return recipe;
+            });
+        } catch (OptimisticLockingFailureException e) {
+            // Another request updated or deleted the recipe since it was loaded
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
         }
-        // If the recipe exists, but the user is not the owner, return 403
-        if (!recipe.getAuthor().getEmail().equals(username)) {
-            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        if (updated == null) {
+            return ownershipFailure(id);
         }
         // Validate the recipe request
-        if (isValidRecipeRequest(recipeRequest)) {
-            // Update the recipe
-            recipe.setName(recipeRequest.getName());
-            recipe.setCategory(recipeRequest.getCategory());
-            recipe.setDescription(recipeRequest.getDescription());
-            recipe.setIngredients(recipeRequest.getIngredients());
-            recipe.setDirections(recipeRequest.getDirections());
-            recipeRepository.save(recipe);
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
-        } else {
+        if (!isValid) {
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
+        // The managed recipe is flushed without a save, so the cached recipe is evicted after the commit like on
+        // deletion. The tailer skips the changes of this instance, so it wouldn't evict it either.
+        Cache cache = cacheManager.getCache(RECIPES_CACHE);
+        if (cache != null) {
+            cache.evict(id);
+        }
+        recipeIndexes.forEach(index -> index.index(updated));
+        // Render the new version right away, so the next read doesn't have to
+        renderedRecipeCache.render(updated);
+        recipeChangeFeed.updated(updated);
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
     /**
-     * This method is used to query recipes by category or name.
+     * This method is used to query recipes by category or name. Name queries match every word of the name against
+     * the name, description and ingredients of the recipes and are ranked by relevance and then by date.
      *
      * @param category The category to query by
      * @param name     The name to query by
      * @return A ResponseEntity containing a list of recipes if the query was successful,
      * or 400 if the query was invalid
      */
+    @Transactional(readOnly = true)
     public ResponseEntity<?> getRecipeByParam(String category, String name) {
         // Only one parameter is allowed
         if (category != null && name != null) {
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
         if (category != null) {
-            return new ResponseEntity<>(recipeRepository.findAllByCategoryIgnoreCaseOrderByDateDesc(category), HttpStatus.OK);
+            return new ResponseEntity<>(
+                    recipeRepository.findAllByCategoryKeyOrderByDateDesc(Recipe.toCategoryKey(category)), HttpStatus.OK);
         } else if (name != null) {
-            return new ResponseEntity<>(recipeRepository.findAllByNameContainingIgnoreCaseOrderByDateDesc(name), HttpStatus.OK);
+            // Name queries are answered from the in-memory index instead of a LIKE scan
+            return new ResponseEntity<>(recipeSearchIndex.search(name), HttpStatus.OK);
         } else {
             // No parameters specified (return 400 for now)
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
     }
 
+    /**
+     * This method is used to query recipes by category, name or ingredients, optionally paged. Category queries can
+     * either be paged by page number or continued after a cursor; the response carries the cursor for the next page
+     * in the X-Next-Cursor header. Name and ingredient queries can only be paged by page number; the response carries
+     * the next page number in the X-Next-Page header.
+     *
+     * @param category    The category to query by
+     * @param name        The name to query by
+     * @param ingredients The comma-separated ingredients to query by
+     * @param match       How many of the ingredients a recipe has to use: "all" (default), "any" or a number
+     * @param page        The zero-based page number (may be null)
+     * @param size        The page size (may be null)
+     * @param after       The cursor token of the previous page (may be null)
+     * @param request     The request, used to evaluate the If-None-Match header
+     * @return A ResponseEntity containing a list of recipes if the query was successful, 304 if the result didn't
+     * change, or 400 if the query was invalid
+     */
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> getRecipeByParam(String category, String name, String ingredients, String match,
+                                              Integer page, Integer size, String after,
+                                              ConditionalRequest request) {
+        ResponseEntity<?> response;
+        if (ingredients != null) {
+            // Ingredients can't be combined with the other queries
+            response = category != null || name != null || after != null
+                    ? new ResponseEntity<>(HttpStatus.BAD_REQUEST)
+                    : getRecipesByIngredients(ingredients, match, page, size);
+        } else if (match != null) {
+            response = new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } else {
+            // Without any paging parameter, return the complete result
+            response = page == null && size == null && after == null
+                    ? getRecipeByParam(category, name)
+                    : getRecipePage(category, name, page, size, after);
+        }
+        if (response.getStatusCode() == HttpStatus.OK && response.getBody() instanceof List<?> recipes
+                && request.checkNotModified(aggregateETag(recipes))) {
+            return new ResponseEntity<>(response.getHeaders(), HttpStatus.NOT_MODIFIED);
+        }
+        return response;
+    }
+
+    /**
+     * This method is used to list the categories with the number of their recipes and the date of the newest one.
+     * The counts are maintained in memory, so no aggregate query is run.
+     *
+     * @param top The maximum number of categories to return (may be null)
+     * @return A ResponseEntity containing the categories with the most recipes first, or 400 if top isn't positive
+     */
+    public ResponseEntity<?> getCategories(Integer top) {
+        if (top != null && top < 1) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(categoryFacetIndex.top(top == null ? DEFAULT_TOP_CATEGORIES : top), HttpStatus.OK);
+    }
+
+    /**
+     * This method is used to subscribe to the created, updated and deleted recipes.
+     *
+     * @param lastEventId The id of the last event the client received (may be null)
+     * @return The changes as server-sent events, ending with a resync event if the client missed changes
+     */
+    public Flux<ServerSentEvent<RecipeChange>> getChanges(Long lastEventId) {
+        return recipeChangeFeed.subscribe(lastEventId);
+    }
+
+    /**
+     * A helper method to answer a write that didn't match a recipe of the user: 403 if the recipe exists (and thus
+     * belongs to someone else), 404 otherwise.
+     */
+    private ResponseEntity<?> ownershipFailure(long id) {
+        // Checked on the primary database, a lagging replica may not have the recipe yet
+        boolean exists = Boolean.TRUE.equals(transactionTemplate.execute(status -> recipeRepository.existsById(id)));
+        return new ResponseEntity<>(exists ? HttpStatus.FORBIDDEN : HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * A helper method to query recipes by ingredients. The recipes using the most of the ingredients come first.
+     */
+    private ResponseEntity<?> getRecipesByIngredients(String ingredients, String match, Integer page, Integer size) {
+        List<String> queried = Arrays.stream(ingredients.split(","))
+                .map(ingredient -> ingredient.trim().toLowerCase(Locale.ROOT))
+                .filter(ingredient -> !ingredient.isEmpty())
+                .distinct()
+                .toList();
+        int minimumMatches = minimumMatches(match, queried.size());
+        if (queried.isEmpty() || minimumMatches < 1) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<Long> ids = ingredientIndex.search(queried, minimumMatches);
+        if (page == null && size == null) {
+            return new ResponseEntity<>(findRecipes(ids), HttpStatus.OK);
+        }
+        return getListPage(ids, page, size, this::findRecipes);
+    }
+
+    /**
+     * A helper method to load the recipes of a ranked list of ids, in the order of the ids. Cached recipes are taken
+     * from the recipe cache, the others are loaded in one query. Recipes deleted in the meantime are left out.
+     */
+    private List<Recipe> findRecipes(List<Long> ids) {
+        Cache cache = cacheManager.getCache(RECIPES_CACHE);
+        Map<Long, Recipe> recipes = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            Recipe cached = cache == null ? null : cache.get(id, Recipe.class);
+            if (cached != null) {
+                recipes.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            recipeRepository.findAllById(missing).forEach(recipe -> recipes.put(recipe.getId(), recipe));
+        }
+        return ids.stream().map(recipes::get).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * A helper method to convert the match parameter of an ingredient query to the number of ingredients a recipe
+     * has to use, or 0 if it is invalid.
+     */
+    private static int minimumMatches(String match, int ingredients) {
+        if (match == null || match.equalsIgnoreCase("all")) {
+            return ingredients;
+        }
+        if (match.equalsIgnoreCase("any")) {
+            return 1;
+        }
+        try {
+            int minimumMatches = Integer.parseInt(match);
+            return minimumMatches <= ingredients ? minimumMatches : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * A helper method to query a single page of recipes.
+     */
+    private ResponseEntity<?> getRecipePage(String category, String name, Integer page, Integer size, String after) {
+        // Exactly one parameter is allowed, the cursor is only supported for category queries
+        // and can't be combined with a page number
+        if ((category == null) == (name == null) || (after != null && (name != null || page != null))) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (name != null) {
+            return getListPage(recipeSearchIndex.search(name), page, size, recipes -> recipes);
+        }
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        int pageNumber = page == null ? 0 : page;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE || pageNumber < 0) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        Slice<Recipe> slice;
+        if (after != null) {
+            RecipeCursor cursor;
+            try {
+                cursor = RecipeCursor.decode(after);
+            } catch (IllegalArgumentException e) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            slice = recipeRepository.findAllByCategoryKeyAfter(Recipe.toCategoryKey(category), cursor.date(),
+                    cursor.id(), PageRequest.of(0, pageSize, NEWEST_FIRST));
+        } else {
+            Pageable pageable = PageRequest.of(pageNumber, pageSize, NEWEST_FIRST);
+            slice = recipeRepository.findAllByCategoryKey(Recipe.toCategoryKey(category), pageable);
+        }
+        if (slice.hasNext()) {
+            List<Recipe> content = slice.getContent();
+            headers.set(NEXT_CURSOR_HEADER, RecipeCursor.after(content.get(content.size() - 1)).encode());
+        }
+        return new ResponseEntity<>(slice.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * A helper method to page a ranked result held in memory by page number. Only the recipes of the page are
+     * loaded.
+     */
+    private static <T> ResponseEntity<?> getListPage(List<T> results, Integer page, Integer size,
+                                                     Function<List<T>, List<Recipe>> load) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        int pageNumber = page == null ? 0 : page;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE || pageNumber < 0) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        int from = (int) Math.min((long) pageNumber * pageSize, results.size());
+        int to = Math.min(from + pageSize, results.size());
+        if (to < results.size()) {
+            headers.set(NEXT_PAGE_HEADER, String.valueOf(pageNumber + 1));
+        }
+        return new ResponseEntity<>(load.apply(results.subList(from, to)), headers, HttpStatus.OK);
+    }
+
+    /**
+     * A helper method to build the ETag of a recipe version. It's weak, because the same ETag is sent for the plain
+     * and the gzip compressed representation, which are equivalent but not byte-identical.
+     */
+    private static String eTag(long id, long version) {
+        return "W/\"" + id + "-" + version + "\"";
+    }
+
+    /**
+     * A helper method to build the weak ETag of a search result from the ids and versions of its recipes (large
+     * results are compressed by the server).
+     */
+    private static String aggregateETag(List<?> recipes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocate(2 * Long.BYTES);
+            for (Object element : recipes) {
+                Recipe recipe = (Recipe) element;
+                buffer.clear();
+                digest.update(buffer.putLong(recipe.getId()).putLong(recipe.getVersion()).flip());
+            }
+            return "W/\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime == null ? -1 : dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
     /**
      * A helper method to validate a RecipeRequest object.
      *
      * @param recipeRequest The RecipeRequest object to validate
      * @return True if the RecipeRequest object is valid, false otherwise
      */
-    private boolean isValidRecipeRequest(RecipeRequest recipeRequest) {
+    boolean isValidRecipeRequest(RecipeRequest recipeRequest) {
         boolean isValidName = recipeRequest.getName() != null
                 && !recipeRequest.getName().isEmpty()
                 && !recipeRequest.getName().isBlank();
@@ -1,44 +1,118 @@
 package io.github.dankoller.springrecipe.service;
 
+import io.github.dankoller.springrecipe.auth.CachingAuthenticationProvider;
+import io.github.dankoller.springrecipe.auth.PasswordHasher;
+import io.github.dankoller.springrecipe.changes.RecipeChange;
+import io.github.dankoller.springrecipe.cluster.CacheInvalidationOutbox;
 import io.github.dankoller.springrecipe.entity.user.User;
 import io.github.dankoller.springrecipe.persistence.UserRepository;
 import io.github.dankoller.springrecipe.request.RegistrationRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
 @SuppressWarnings("unused")
 public class UserService {
+    // The SQL state of a unique constraint violation
+    private static final String UNIQUE_VIOLATION = "23505";
+
     @Autowired
     private UserRepository userRepository;
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHasher passwordHasher;
+    @Autowired
+    private CachingAuthenticationProvider cachingAuthenticationProvider;
+    @Autowired
+    private CacheInvalidationOutbox cacheInvalidationOutbox;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    private Executor taskExecutor;
+    @Value("${auth.hashing.retry-after:1s}")
+    private Duration retryAfter;
 
     /**
-     * This method handles the registration of a new user.
+     * This method handles the registration of a new user. The password is hashed on the bounded hashing pool and the
+     * user is inserted on the application task executor, the request thread is released in the meantime.
      *
      * @param request The registration request
-     * @return A ResponseEntity with the result of the registration
+     * @return A future of the ResponseEntity with the result of the registration, 400 if the user already exists or
+     * can't be stored, or 503 (with Retry-After) if too many registrations are being hashed or the database is
+     * unavailable
      */
-    public ResponseEntity<?> register(RegistrationRequest request) {
-        // Check if user already exists
-        if (userRepository.findByEmailIgnoreCase(request.getEmail()) != null) {
-            return new ResponseEntity<>("User already exists", HttpStatus.BAD_REQUEST);
-        }
-
+    public CompletableFuture<ResponseEntity<?>> register(RegistrationRequest request) {
         // Validate registration request
-        if (isValidRegistrationRequest(request)) {
-            // Create a new user
-            User user = new User(request.getEmail(), request.getPassword());
+        if (!isValidRegistrationRequest(request)) {
+            return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.OK));
+        }
+        String email = request.getEmail().toLowerCase(Locale.ROOT);
+        CompletableFuture<String> encodedPassword;
+        try {
             // Salt the password and encode it
-            user.setPassword(passwordEncoder.encode(user.getPassword()));
-            // Save the user
-            userRepository.save(user);
+            encodedPassword = passwordHasher.encode(request.getPassword());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(serviceUnavailable("Too many registrations, retry later"));
         }
-        return new ResponseEntity<>(HttpStatus.OK);
+        // The insert waits for a connection, so it runs on another executor than the hashing pool, whose threads
+        // are sized for the CPU
+        return encodedPassword.<ResponseEntity<?>>thenApplyAsync(password -> {
+            try {
+                // Insert or fail, the unique index on the email rejects concurrent registrations of the same email.
+                // The invalidation for the other instances is committed with the user.
+                transactionTemplate.executeWithoutResult(status -> {
+                    userRepository.save(new User(email, password));
+                    cacheInvalidationOutbox.userChanged(email, RecipeChange.CREATED);
+                });
+            } catch (DataIntegrityViolationException e) {
+                // Other violations (e.g. an email too long for its column) don't mean the user exists
+                return new ResponseEntity<>(isDuplicateKey(e) ? "User already exists" : "Invalid registration",
+                        HttpStatus.BAD_REQUEST);
+            } catch (DataAccessException | TransactionException e) {
+                return serviceUnavailable("Registration failed, retry later");
+            }
+            // Drop any cached authentication for this email
+            cachingAuthenticationProvider.evict(email);
+            return new ResponseEntity<>(HttpStatus.OK);
+        }, taskExecutor);
+    }
+
+    /**
+     * A helper method to check if a failed insert violated a unique constraint, i.e. the unique index on the email.
+     * Hibernate reports the violation as DataIntegrityViolationException, the SQL state tells it apart.
+     */
+    private static boolean isDuplicateKey(DataIntegrityViolationException e) {
+        return e instanceof DuplicateKeyException
+                || NestedExceptionUtils.getMostSpecificCause(e) instanceof SQLException sqlException
+                && UNIQUE_VIOLATION.equals(sqlException.getSQLState());
+    }
+
+    /**
+     * A helper method to answer a registration that can be retried later with 503 and a Retry-After header.
+     */
+    private ResponseEntity<?> serviceUnavailable(String message) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.toSeconds())));
+        return new ResponseEntity<>(message, headers, HttpStatus.SERVICE_UNAVAILABLE);
     }
 
     /**
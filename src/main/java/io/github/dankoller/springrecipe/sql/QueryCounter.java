@@ -0,0 +1,105 @@
+package io.github.dankoller.springrecipe.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class records the statements executed by the current thread, so tests can assert how many statements an
+ * operation needs and catch regressions like N+1 selects or redundant lookups:
+ * <pre>
+ * try (QueryCounter.Recording queries = QueryCounter.start()) {
+ *     mockMvc.perform(get("/api/recipe/1"));
+ *     assertThat(queries.count()).isLessThanOrEqualTo(1);
+ *     assertThat(queries.getRepeatedStatements()).isEqualTo(Map.of());
+ * }
+ * </pre>
+ * Statements are recorded by the SqlProfilingListener, i.e. only while recipes.sql.profiling.enabled is true. A batch
+ * counts as one statement. Outside a recording, the cost is a thread-local lookup per statement.
+ */
+public final class QueryCounter {
+    private static final ThreadLocal<Recording> RECORDING = new ThreadLocal<>();
+
+    private QueryCounter() {
+    }
+
+    /**
+     * This method starts recording the statements of the current thread, until the recording is closed.
+     *
+     * @return The recording
+     */
+    public static Recording start() {
+        Recording recording = new Recording(RECORDING.get());
+        RECORDING.set(recording);
+        return recording;
+    }
+
+    /**
+     * This method adds an executed statement to the recording of the current thread, if there is one.
+     *
+     * @param statement The statement shape
+     */
+    static void record(String statement) {
+        Recording recording = RECORDING.get();
+        if (recording != null) {
+            recording.statements.add(statement);
+        }
+    }
+
+    /**
+     * The statements executed by a thread since the recording started.
+     */
+    public static final class Recording implements AutoCloseable {
+        // The recording to continue with once this one is closed
+        private final Recording outer;
+        private final List<String> statements = new ArrayList<>();
+
+        private Recording(Recording outer) {
+            this.outer = outer;
+        }
+
+        /**
+         * This method returns the number of executed statements.
+         *
+         * @return The number of statements
+         */
+        public int count() {
+            return statements.size();
+        }
+
+        /**
+         * This method returns the statement shapes executed more than once. The same select repeated per loaded
+         * entity or collection (an N+1 select) shows up here, even if the total count is still within its limit.
+         *
+         * @return The number of executions by statement shape, in the order of their first execution
+         */
+        public Map<String, Integer> getRepeatedStatements() {
+            Map<String, Integer> executions = new LinkedHashMap<>();
+            for (String statement : statements) {
+                executions.merge(statement, 1, Integer::sum);
+            }
+            executions.values().removeIf(count -> count < 2);
+            return executions;
+        }
+
+        /**
+         * This method returns the executed statements, e.g. to describe a failed assertion.
+         *
+         * @return The statement shapes in the order of their execution
+         */
+        public List<String> getStatements() {
+            return Collections.unmodifiableList(statements);
+        }
+
+        @Override
+        public void close() {
+            if (outer == null) {
+                RECORDING.remove();
+            } else {
+                RECORDING.set(outer);
+            }
+        }
+    }
+}
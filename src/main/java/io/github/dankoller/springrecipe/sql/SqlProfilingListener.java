@@ -0,0 +1,299 @@
+package io.github.dankoller.springrecipe.sql;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ProxyJdbcObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.lang.ref.WeakReference;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * This class profiles the statements sent through the data source proxy. Statements are grouped by their shape (the
+ * SQL with literals replaced by ? and IN lists collapsed), every shape gets a timer of its executions and a summary
+ * of the rows it returned or changed. Statements taking at least the slow query threshold are counted and logged,
+ * at most once per shape and log interval, so a slow statement under load doesn't flood the log. Every statement is
+ * logged at debug level.
+ * <p>
+ * The rows changed by a write are always recorded. The rows of a select are only counted if
+ * recipes.sql.profiling.row-counts is true (the result sets are proxied then, which costs a little on every row):
+ * they are counted while the result set is read and recorded once it's read to the end or closed. The number of
+ * shapes is bounded, further shapes are recorded as "other".
+ * <p>
+ * The meters are registered once the meter registry binds this listener (the registry can't be injected, its data
+ * source metrics depend on the data source), statements executed before, e.g. by the migrations, aren't profiled.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(value = "recipes.sql.profiling.enabled", matchIfMissing = true)
+public class SqlProfilingListener implements QueryExecutionListener, MethodExecutionListener, MeterBinder {
+    public static final String STATEMENTS_METRIC = "recipes.sql.statements";
+    public static final String ROWS_METRIC = "recipes.sql.rows";
+    public static final String SLOW_METRIC = "recipes.sql.slow";
+    private static final String OTHER = "other";
+    private static final Set<String> OPERATIONS = Set.of("select", "insert", "update", "delete", "merge", "call");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final long slowThresholdMillis;
+    private final long logIntervalNanos;
+    private final int maximumStatements;
+    // Set when bound, the registry is written last
+    private Counter slowStatements;
+    private Shape other;
+    private volatile MeterRegistry meterRegistry;
+    // Shapes by SQL as sent by the application, which is a small set of prepared statements
+    private final Map<String, Shape> shapes = new ConcurrentHashMap<>();
+    // The shapes of executed selects and the rows read so far, by statement and result set (weak keys compare by
+    // identity and don't keep closed statements around)
+    private final Cache<Object, Shape> selects = Caffeine.newBuilder().weakKeys().build();
+    private final Cache<Object, RowCount> rowCounts = Caffeine.newBuilder().weakKeys().build();
+    // The row count a thread incremented last: the rows of a result set are read in a row, so they are counted
+    // without a cache lookup per row
+    private final ThreadLocal<RowCount> current = new ThreadLocal<>();
+
+    public SqlProfilingListener(@Value("${recipes.sql.slow-query.threshold:200ms}") Duration slowThreshold,
+                                @Value("${recipes.sql.slow-query.log-interval:10s}") Duration logInterval,
+                                @Value("${recipes.sql.profiling.maximum-statements:500}") int maximumStatements) {
+        this.slowThresholdMillis = slowThreshold.toMillis();
+        this.logIntervalNanos = logInterval.toNanos();
+        this.maximumStatements = maximumStatements;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        slowStatements = registry.counter(SLOW_METRIC);
+        other = new Shape(registry, OTHER, OTHER);
+        meterRegistry = registry;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        // Timed by the proxy
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        MeterRegistry registry = meterRegistry;
+        if (registry == null) {
+            // Not bound yet
+            return;
+        }
+        String sql = queryInfoList.size() == 1
+                ? queryInfoList.get(0).getQuery()
+                : queryInfoList.stream().map(QueryInfo::getQuery).distinct().collect(Collectors.joining("; "));
+        Shape shape = shapes.get(sql);
+        if (shape == null) {
+            shape = shapes.size() < maximumStatements ? shapes.computeIfAbsent(sql, key -> newShape(registry, key)) : other;
+        }
+        long elapsed = execInfo.getElapsedTime();
+        (execInfo.isSuccess() ? shape.success : shape.error).record(elapsed, TimeUnit.MILLISECONDS);
+        QueryCounter.record(shape.statement);
+        if (execInfo.isSuccess()) {
+            recordResult(execInfo, shape);
+        }
+        if (elapsed >= slowThresholdMillis) {
+            slowStatements.increment();
+            shape.logSlow(elapsed, sql);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("{} ms: {}", elapsed, sql);
+        }
+    }
+
+    @Override
+    public void beforeMethod(MethodExecutionContext executionContext) {
+        // Only the rows read from result sets are counted
+    }
+
+    @Override
+    public void afterMethod(MethodExecutionContext executionContext) {
+        if (!(executionContext.getTarget() instanceof ResultSet resultSet)) {
+            return;
+        }
+        String method = executionContext.getMethod().getName();
+        if ("next".equals(method) && Boolean.TRUE.equals(executionContext.getResult())) {
+            Object target = target(resultSet);
+            RowCount rowCount = current.get();
+            if (rowCount == null || rowCount.resultSet.get() != target) {
+                rowCount = rowCounts.get(target, key -> startCount(resultSet, target));
+                if (rowCount == null) {
+                    return;
+                }
+                current.set(rowCount);
+            }
+            rowCount.rows++;
+        } else if ("next".equals(method) || "close".equals(method)) {
+            Object target = target(resultSet);
+            RowCount rowCount = rowCounts.asMap().remove(target);
+            if (rowCount == null && "next".equals(method)) {
+                // An empty result
+                rowCount = startCount(resultSet, target);
+            }
+            if (rowCount != null) {
+                if (current.get() == rowCount) {
+                    current.remove();
+                }
+                rowCount.finish();
+            }
+        }
+    }
+
+    /**
+     * A helper method to record the rows changed by an update or to remember the shape of a select until its
+     * result set is read.
+     */
+    private void recordResult(ExecutionInfo execInfo, Shape shape) {
+        Object result = execInfo.getResult();
+        if (result instanceof Integer updated && updated >= 0) {
+            shape.rows.record(updated);
+        } else if (result instanceof Long updated && updated >= 0) {
+            shape.rows.record(updated);
+        } else if (result instanceof int[] batch) {
+            long updated = 0;
+            for (int count : batch) {
+                // Negative counts (SUCCESS_NO_INFO) carry no number of rows
+                updated += Math.max(0, count);
+            }
+            shape.rows.record(updated);
+        } else if (result instanceof ResultSet || Boolean.TRUE.equals(result)) {
+            selects.put(target(execInfo.getStatement()), shape);
+        }
+    }
+
+    /**
+     * A helper method to start counting the rows of a result set, if it belongs to a profiled select.
+     */
+    private RowCount startCount(ResultSet resultSet, Object target) {
+        try {
+            Statement statement = resultSet.getStatement();
+            if (statement == null) {
+                return null;
+            }
+            Object key = target(statement);
+            Shape shape = selects.asMap().remove(key);
+            return shape == null ? null : new RowCount(shape, target);
+        } catch (SQLException e) {
+            // Closed already
+            return null;
+        }
+    }
+
+    /**
+     * A helper method to create the meters of a statement shape, tagged with the statement and its operation.
+     */
+    private Shape newShape(MeterRegistry registry, String sql) {
+        String statement = normalize(sql);
+        int space = statement.indexOf(' ');
+        String keyword = (space < 0 ? statement : statement.substring(0, space)).toLowerCase(Locale.ROOT);
+        return new Shape(registry, statement, OPERATIONS.contains(keyword) ? keyword : OTHER);
+    }
+
+    /**
+     * A helper method to get the JDBC object behind a proxy, so proxies and the objects they wrap are the same key.
+     */
+    private static Object target(Object jdbcObject) {
+        return jdbcObject instanceof ProxyJdbcObject proxy ? proxy.getTarget() : jdbcObject;
+    }
+
+    /**
+     * A helper method to get the shape of a statement, e.g. "select ... where id in (?)" for
+     * "select ... where id in (?, ?, 7)".
+     */
+    static String normalize(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("(?)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+
+    /**
+     * The meters and the slow query log state of a statement shape.
+     */
+    private final class Shape {
+        private final String statement;
+        private final Timer success;
+        private final Timer error;
+        private final DistributionSummary rows;
+        private final AtomicLong lastLogged = new AtomicLong(System.nanoTime() - logIntervalNanos);
+        private final AtomicInteger suppressed = new AtomicInteger();
+
+        private Shape(MeterRegistry registry, String statement, String operation) {
+            this.statement = statement;
+            this.success = timer(registry, statement, operation, "success");
+            this.error = timer(registry, statement, operation, "error");
+            this.rows = DistributionSummary.builder(ROWS_METRIC)
+                    .description("The rows returned or changed per execution of a statement")
+                    .tag("statement", statement)
+                    .tag("operation", operation)
+                    .register(registry);
+        }
+
+        private Timer timer(MeterRegistry registry, String statement, String operation, String outcome) {
+            return Timer.builder(STATEMENTS_METRIC)
+                    .description("The executions of a statement")
+                    .tag("statement", statement)
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .register(registry);
+        }
+
+        private void logSlow(long elapsed, String sql) {
+            long now = System.nanoTime();
+            long last = lastLogged.get();
+            if (now - last < logIntervalNanos || !lastLogged.compareAndSet(last, now)) {
+                suppressed.incrementAndGet();
+                return;
+            }
+            log.warn("Slow statement took {} ms ({} more slow executions since the last log): {}",
+                    elapsed, suppressed.getAndSet(0), sql);
+        }
+    }
+
+    /**
+     * The rows read from the result set of a select so far. A result set is read by one thread.
+     */
+    private static final class RowCount {
+        private final Shape shape;
+        // Weak, the row count is the value of the result set in the weak keyed cache
+        private final WeakReference<Object> resultSet;
+        private long rows;
+
+        private RowCount(Shape shape, Object resultSet) {
+            this.shape = shape;
+            this.resultSet = new WeakReference<>(resultSet);
+        }
+
+        private void finish() {
+            shape.rows.record(rows);
+        }
+    }
+}
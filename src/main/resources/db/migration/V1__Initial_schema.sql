@@ -0,0 +1,24 @@
+-- Schema as it was created by spring.jpa.hibernate.ddl-auto=update.
+-- Existing databases are baselined at this version, so it only runs on empty databases.
+create sequence hibernate_sequence start with 1 increment by 1;
+
+create table user (
+    id       bigint generated by default as identity,
+    email    varchar(255),
+    password varchar(255),
+    primary key (id)
+);
+
+create table recipe (
+    id          bigint not null,
+    category    varchar(255),
+    date        timestamp,
+    description varchar(255),
+    directions  varbinary(255),
+    ingredients varbinary(255),
+    name        varchar(255),
+    author_id   bigint,
+    primary key (id)
+);
+
+alter table recipe add constraint fk_recipe_author foreign key (author_id) references user;
@@ -0,0 +1,4 @@
+-- Version and last modification time of recipes, used for optimistic locking and HTTP conditional requests
+alter table recipe add column version bigint default 0 not null;
+alter table recipe add column last_modified timestamp;
+update recipe set last_modified = date;
@@ -0,0 +1,5 @@
+-- Emails are stored lower-cased and unique, so concurrent registrations of the same email can't both succeed.
+-- Emails that only differ in case from the email of another user are kept as they are, so no account is lost.
+update user u set email = lower(email)
+where not exists (select 1 from user o where o.id <> u.id and lower(o.email) = lower(u.email));
+create unique index uk_user_email on user (email);
@@ -0,0 +1,14 @@
+-- Outbox of cache invalidations. A row is written in the transaction of every recipe and user change and the table
+-- is tailed by every instance sharing the database, so their in-memory caches and indexes follow the changes made by
+-- the other instances. Rows are deleted after a retention period.
+create table cache_invalidation (
+    id          bigint generated by default as identity,
+    cache_name  varchar(32)  not null,
+    entity_key  varchar(255) not null,
+    change_type varchar(16)  not null,
+    origin      varchar(64)  not null,
+    created_at  timestamp    not null,
+    primary key (id)
+);
+
+create index idx_cache_invalidation_created_at on cache_invalidation (created_at);
@@ -0,0 +1,126 @@
+package io.github.dankoller.springrecipe;
+
+import io.github.dankoller.springrecipe.entity.Recipe;
+import io.github.dankoller.springrecipe.entity.user.User;
+import io.github.dankoller.springrecipe.persistence.UserRepository;
+import io.github.dankoller.springrecipe.request.ConditionalRequest;
+import io.github.dankoller.springrecipe.request.RecipeRequest;
+import io.github.dankoller.springrecipe.service.RecipeService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+/**
+ * This class runs two instances of the application against the same in-memory database and checks that the caches
+ * and indexes of one instance follow the changes made through the other one.
+ */
+class CacheInvalidationTests {
+    private static final String USER_EMAIL = "cluster@example.com";
+    // A request without conditional headers
+    private static final ConditionalRequest UNCONDITIONAL = new ConditionalRequest() {
+        @Override
+        public String getHeader(String name) {
+            return null;
+        }
+
+        @Override
+        public boolean checkNotModified(String eTag, long lastModified) {
+            return false;
+        }
+    };
+
+    private static ConfigurableApplicationContext first;
+    private static ConfigurableApplicationContext second;
+
+    @BeforeAll
+    static void start() {
+        first = start("first");
+        second = start("second");
+    }
+
+    @AfterAll
+    static void stop() {
+        second.close();
+        first.close();
+    }
+
+    @Test
+    void testChangesReachOtherInstance() throws InterruptedException {
+        first.getBean(UserRepository.class).save(new User(USER_EMAIL, "password"));
+        RecipeService firstService = first.getBean(RecipeService.class);
+        RecipeService secondService = second.getBean(RecipeService.class);
+
+        // Created on the first instance, found by the index of the second one
+        RecipeRequest request = new RecipeRequest("Cluster Recipe", "Cluster Category", "Test Description",
+                new String[]{"honey"}, new String[]{"Mix"});
+        long id = (Long) ((Map<?, ?>) firstService.postRecipe(USER_EMAIL, request).getBody()).get("id");
+        awaitUntil(() -> searchByName(secondService, "Cluster Recipe") == 1);
+
+        // Cached on the second instance, then updated on the first one
+        assertThat(json(secondService.getRecipe(id, UNCONDITIONAL))).contains("Cluster Recipe");
+        request.setName("Updated Recipe");
+        assertThat(firstService.updateRecipe(USER_EMAIL, id, request).getStatusCode())
+                .isEqualTo(HttpStatus.NO_CONTENT);
+        awaitUntil(() -> json(secondService.getRecipe(id, UNCONDITIONAL)).contains("Updated Recipe"));
+        assertThat(searchByName(secondService, "Updated Recipe")).isEqualTo(1);
+
+        // Deleted on the first instance
+        assertThat(firstService.deleteRecipe(USER_EMAIL, id).getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        awaitUntil(() -> secondService.getRecipe(id, UNCONDITIONAL).getStatusCode() == HttpStatus.NOT_FOUND);
+        assertThat(searchByName(secondService, "Updated Recipe")).isEqualTo(0);
+    }
+
+    /**
+     * Helper method to start an instance of the application on a random port.
+     */
+    private static ConfigurableApplicationContext start(String nodeId) {
+        return new SpringApplicationBuilder(SpringrecipeApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:cluster;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.show-sql=false",
+                        "--recipes.cluster.node-id=" + nodeId,
+                        "--recipes.cluster.poll-interval=100ms");
+    }
+
+    /**
+     * Helper method to count the recipes found by a name query.
+     */
+    private static int searchByName(RecipeService recipeService, String name) {
+        ResponseEntity<?> response = recipeService.getRecipeByParam(null, name);
+        return ((List<?>) response.getBody()).stream()
+                .filter(recipe -> ((Recipe) recipe).getName().equals(name))
+                .toList()
+                .size();
+    }
+
+    /**
+     * Helper method to get the JSON of a response.
+     */
+    private static String json(ResponseEntity<byte[]> response) {
+        return response.getBody() == null ? "" : new String(response.getBody(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Helper method to wait until a condition holds, at most 10 seconds.
+     */
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+}
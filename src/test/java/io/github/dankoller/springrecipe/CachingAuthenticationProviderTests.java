@@ -0,0 +1,95 @@
+package io.github.dankoller.springrecipe;
+
+import io.github.dankoller.springrecipe.auth.CachingAuthenticationProvider;
+import io.github.dankoller.springrecipe.entity.user.User;
+import io.github.dankoller.springrecipe.entity.user.UserDetailsImpl;
+import io.github.dankoller.springrecipe.entity.user.UserDetailsServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * This class tests that the authentication cache skips the BCrypt verification of recently verified credentials only.
+ */
+class CachingAuthenticationProviderTests {
+    private static final String EMAIL = "cached@example.com";
+    private static final String PASSWORD = "password";
+
+    private final AtomicInteger verifications = new AtomicInteger();
+    private UserDetailsServiceImpl userDetailsService;
+    private CachingAuthenticationProvider provider;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(4);
+        // Counts the BCrypt verifications
+        PasswordEncoder passwordEncoder = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return bcrypt.encode(rawPassword);
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                verifications.incrementAndGet();
+                return bcrypt.matches(rawPassword, encodedPassword);
+            }
+        };
+        userDetailsService = mock(UserDetailsServiceImpl.class);
+        when(userDetailsService.loadUserByUsername(EMAIL))
+                .thenReturn(new UserDetailsImpl(new User(EMAIL, bcrypt.encode(PASSWORD))));
+        provider = new CachingAuthenticationProvider(userDetailsService, passwordEncoder, new SimpleMeterRegistry(),
+                100, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void testCacheHitSkipsVerification() {
+        assertThat(provider.authenticate(credentials(PASSWORD)).isAuthenticated()).isTrue();
+        assertThat(provider.authenticate(credentials(PASSWORD)).isAuthenticated()).isTrue();
+        assertThat(verifications.get()).isEqualTo(1);
+        verify(userDetailsService, times(1)).loadUserByUsername(EMAIL);
+    }
+
+    @Test
+    void testWrongPasswordIsNotCached() {
+        assertThatThrownBy(() -> provider.authenticate(credentials("wrong")))
+                .isInstanceOf(BadCredentialsException.class);
+        assertThatThrownBy(() -> provider.authenticate(credentials("wrong")))
+                .isInstanceOf(BadCredentialsException.class);
+        assertThat(verifications.get()).isEqualTo(2);
+
+        // A cached correct password doesn't let a wrong one through either
+        provider.authenticate(credentials(PASSWORD));
+        assertThatThrownBy(() -> provider.authenticate(credentials("wrong")))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void testEvictForcesVerification() {
+        provider.authenticate(credentials(PASSWORD));
+        provider.evict(EMAIL.toUpperCase());
+        provider.authenticate(credentials(PASSWORD));
+        assertThat(verifications.get()).isEqualTo(2);
+    }
+
+    /**
+     * Helper method to create an authentication request for the test user.
+     */
+    private static UsernamePasswordAuthenticationToken credentials(String password) {
+        return new UsernamePasswordAuthenticationToken(EMAIL, password);
+    }
+}
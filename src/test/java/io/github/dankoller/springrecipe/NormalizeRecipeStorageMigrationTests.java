@@ -0,0 +1,96 @@
+package io.github.dankoller.springrecipe;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+/**
+ * This class migrates a database holding recipes in the V1 shape (ingredients and directions as serialized String[]
+ * columns) to V2 and checks that the elements are moved into the element tables in their order.
+ */
+class NormalizeRecipeStorageMigrationTests {
+    private static final String URL = "jdbc:h2:mem:migration;DB_CLOSE_DELAY=-1";
+
+    @Test
+    void testSerializedArraysAreNormalized() throws Exception {
+        Flyway.configure().dataSource(URL, "sa", "").target("1").load().migrate();
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "")) {
+            insertV1Recipe(connection, 1, "Mint Tea",
+                    new String[]{"boiled water", "honey", "fresh mint leaves"},
+                    new String[]{"Boil water", "Add fresh mint leaves", "Add honey"});
+            insertV1Recipe(connection, 2, "Empty Recipe", null, null);
+        }
+
+        Flyway.configure().dataSource(URL, "sa", "").target("2").load().migrate();
+
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "")) {
+            assertThat(elements(connection, "select ingredient from recipe_ingredient "
+                    + "where recipe_id = 1 order by ingredient_order"))
+                    .isEqualTo(List.of("boiled water", "honey", "fresh mint leaves"));
+            assertThat(elements(connection, "select direction from recipe_direction "
+                    + "where recipe_id = 1 order by direction_order"))
+                    .isEqualTo(List.of("Boil water", "Add fresh mint leaves", "Add honey"));
+            assertThat(elements(connection, "select ingredient from recipe_ingredient where recipe_id = 2"))
+                    .isEqualTo(List.of());
+            assertThat(elements(connection, "select category_key from recipe where id = 1"))
+                    .isEqualTo(List.of("test category"));
+        }
+    }
+
+    /**
+     * Helper method to insert a recipe the way Hibernate stored it before V2.
+     */
+    private static void insertV1Recipe(Connection connection, long id, String name,
+                                       String[] ingredients, String[] directions) throws SQLException, IOException {
+        try (PreparedStatement insert = connection.prepareStatement("insert into recipe "
+                + "(id, category, date, description, directions, ingredients, name) "
+                + "values (?, 'Test Category', current_timestamp, 'Test Description', ?, ?, ?)")) {
+            insert.setLong(1, id);
+            insert.setBytes(2, serialize(directions));
+            insert.setBytes(3, serialize(ingredients));
+            insert.setString(4, name);
+            insert.executeUpdate();
+        }
+    }
+
+    /**
+     * Helper method to serialize an array like Hibernate's serializable type did.
+     */
+    private static byte[] serialize(String[] elements) throws IOException {
+        if (elements == null) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(elements);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Helper method to read the first column of all rows of a query.
+     */
+    private static List<String> elements(Connection connection, String query) throws SQLException {
+        List<String> elements = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+            while (resultSet.next()) {
+                elements.add(resultSet.getString(1));
+            }
+        }
+        return elements;
+    }
+}
@@ -0,0 +1,313 @@
+package io.github.dankoller.springrecipe;
+
+import io.github.dankoller.springrecipe.entity.Recipe;
+import io.github.dankoller.springrecipe.entity.user.User;
+import io.github.dankoller.springrecipe.persistence.RecipeRepository;
+import io.github.dankoller.springrecipe.persistence.UserRepository;
+import io.github.dankoller.springrecipe.service.ReactiveRecipeService;
+import io.github.dankoller.springrecipe.service.ReactiveUserService;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.boot.web.reactive.server.ReactiveWebServerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+/**
+ * The API tests of {@link SpringrecipeApplicationTests} against the WebFlux variant of the API.
+ */
+@SpringBootTest(properties = "spring.main.web-application-type=reactive")
+@ActiveProfiles("reactive")
+@AutoConfigureWebTestClient
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@SuppressWarnings({"unused", "FieldCanBeLocal"})
+class ReactiveSpringrecipeApplicationTests {
+    // Users
+    private static final String randomUserId = UUID.randomUUID().toString().substring(0, 10).replaceAll("-", "");
+    private final String validUserEmail = randomUserId + "@gmail.com";
+    private static final String validUserPassword = UUID.randomUUID().toString().substring(0, 10);
+    private final String invalidUserEmail = "test.@.com";
+    private final String invalidUserPassword = "test";
+
+    // Recipes
+    private final String validRecipeJson = """
+            {
+              "name": "Test Recipe",
+              "category": "Test Category",
+              "description": "Test Description",
+              "ingredients": ["boiled water", "honey", "fresh mint leaves"],
+              "directions": ["Boil water", "Pour boiling hot water into a mug", "Add fresh mint leaves",\s
+              "Mix and let the mint leaves seep for 3-5 minutes", "Add honey and mix again"]
+            }""";
+    private final String invalidRecipeJson = """
+            {
+              "name": "      ",
+              "category": "      ",
+              "description": "       ",
+              "ingredients": ["Something"],
+              "directions": ["Do stuff"]
+            }""";
+    private final String patchedRecipeJson = """
+            {
+              "name": "Patched Recipe",
+              "category": "Patched Category",
+              "description": "Test Description",
+              "ingredients": ["boiled water", "honey", "fresh mint leaves"],
+              "directions": ["Boil water", "Pour boiling hot water into a mug", "Add fresh mint leaves",\s
+              "Mix and let the mint leaves seep for 3-5 minutes", "Add honey and mix again"]
+            }""";
+
+    @Autowired
+    private WebTestClient webTestClient;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ReactiveUserService reactiveUserService;
+    @Autowired
+    private RecipeRepository recipeRepository;
+    @Autowired
+    private ReactiveRecipeService reactiveRecipeService;
+    @Autowired
+    private ReactiveWebServerFactory reactiveWebServerFactory;
+
+    // Test if the controllers are initialized
+    @Test
+    @Order(1)
+    void contextLoads() {
+        assertThat(userRepository).isNotNull();
+        assertThat(reactiveUserService).isNotNull();
+        assertThat(recipeRepository).isNotNull();
+        assertThat(reactiveRecipeService).isNotNull();
+        // Served by Netty, although Spring MVC keeps Tomcat on the classpath
+        assertThat(reactiveWebServerFactory).isInstanceOf(NettyReactiveWebServerFactory.class);
+    }
+
+    // Test if the user registration works
+    @Test
+    @Order(2)
+    void testUserRegistration() {
+        // Test valid user registration
+        webTestClient.post().uri("/api/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\n" +
+                        "  \"email\": \"" + validUserEmail + "\",\n" +
+                        "  \"password\": \"" + validUserPassword + "\"\n" +
+                        "}")
+                .exchange()
+                .expectStatus().isOk();
+
+        // Test duplicate user registration
+        webTestClient.post().uri("/api/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\n" +
+                        "  \"email\": \"" + validUserEmail.toUpperCase() + "\",\n" +
+                        "  \"password\": \"" + validUserPassword + "\"\n" +
+                        "}")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        // Test invalid user registration
+        webTestClient.post().uri("/api/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\n" +
+                        "  \"email\": \"" + invalidUserEmail + "\",\n" +
+                        "  \"password\": \"" + invalidUserPassword + "\"\n" +
+                        "}")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    // Test if the recipe endpoints require authentication
+    @Test
+    @Order(3)
+    void testUnauthenticatedAccess() {
+        webTestClient.get().uri("/api/recipe/search?name=Test Recipe")
+                .exchange()
+                .expectStatus().isUnauthorized();
+
+        webTestClient.get().uri("/api/recipe/search?name=Test Recipe")
+                .headers(headers -> headers.setBasicAuth(validUserEmail, "wrong password"))
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    // Test if the user can post a new recipe
+    @Test
+    @Order(4)
+    void testRecipeCreation() {
+        // Test valid recipe creation
+        authenticated(webTestClient.post().uri("/api/recipe/new"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(validRecipeJson)
+                .exchange()
+                .expectStatus().isOk();
+
+        // Test invalid recipe creation
+        authenticated(webTestClient.post().uri("/api/recipe/new"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(invalidRecipeJson)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    // Test if a recipe is answered conditionally
+    @Test
+    @Order(5)
+    void testConditionalRecipeRequest() {
+        String eTag = authenticated(webTestClient.get().uri("/api/recipe/" + getLatestRecipeId()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.ETAG)
+                .returnResult(String.class)
+                .getResponseHeaders()
+                .getETag();
+
+        authenticated(webTestClient.get().uri("/api/recipe/" + getLatestRecipeId()))
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+    // Test if the user can patch a recipe
+    @Test
+    @Order(6)
+    void testRecipePatching() {
+        // Test valid recipe patching
+        authenticated(webTestClient.put().uri("/api/recipe/" + getLatestRecipeId()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(patchedRecipeJson)
+                .exchange()
+                .expectStatus().isNoContent();
+
+        // Test invalid recipe patching
+        authenticated(webTestClient.put().uri("/api/recipe/" + getLatestRecipeId()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(invalidRecipeJson)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    // Test if the user can query a recipe by name
+    @Test
+    @Order(7)
+    void testRecipeQuery() {
+        // Test valid recipe query
+        authenticated(webTestClient.get().uri("/api/recipe/search?name=Patched Recipe"))
+                .exchange()
+                .expectStatus().isOk();
+
+        // Test invalid recipe query
+        authenticated(webTestClient.get().uri("/api/recipe/search?name=Invalid Recipe"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.length()").isEqualTo(0);
+    }
+
+    // Test if the user can query a recipe by category
+    @Test
+    @Order(8)
+    void testRecipeQueryByCategory() {
+        // Test valid recipe query
+        authenticated(webTestClient.get().uri("/api/recipe/search?category=Test Category"))
+                .exchange()
+                .expectStatus().isOk();
+
+        // Test invalid recipe query
+        authenticated(webTestClient.get().uri("/api/recipe/search?category=Invalid Category"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.length()").isEqualTo(0);
+    }
+
+    // Test if the user can import and export recipes
+    @Test
+    @Order(9)
+    void testRecipeImportAndExport() {
+        authenticated(webTestClient.post().uri("/api/recipe/import"))
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(validRecipeJson.replace("\n", "") + "\n{ not json }\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.imported").isEqualTo(1)
+                .jsonPath("$.failed").isEqualTo(1);
+
+        authenticated(webTestClient.get().uri("/api/recipe/export?category=Test Category"))
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON);
+
+        // The export emits one recipe per requested one and stops once the client cancels
+        Flux<DataBuffer> body = reactiveRecipeService.exportRecipes("Test Category", null, null).block().getBody();
+        long recipes = recipeRepository.findAllByCategoryKeyOrderByDateDesc("test category").size();
+        assertThat(body.limitRate(1).count().block(Duration.ofSeconds(10))).isEqualTo(recipes);
+        assertThat(body.limitRate(1).take(1).count().block(Duration.ofSeconds(10))).isEqualTo(1L);
+        // Read on the export scheduler, so a slow client doesn't block a thread of the JDBC scheduler
+        assertThat(body.map(buffer -> Thread.currentThread().getName()).blockFirst(Duration.ofSeconds(10)))
+                .startsWith("export");
+    }
+
+    // Test if the user can delete a recipe
+    @Test
+    @Order(10)
+    void testRecipeDeletion() {
+        // Delete the imported recipe
+        authenticated(webTestClient.delete().uri("/api/recipe/" + getLatestRecipeId()))
+                .exchange()
+                .expectStatus().isNoContent();
+
+        // Test valid recipe deletion
+        long recipeId = getLatestRecipeId();
+        authenticated(webTestClient.delete().uri("/api/recipe/" + recipeId))
+                .exchange()
+                .expectStatus().isNoContent();
+
+        // Test invalid recipe deletion
+        authenticated(webTestClient.delete().uri("/api/recipe/" + recipeId))
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    // Cleanups (Test if the user is deleted)
+    @Test
+    @Order(11)
+    void cleanup() {
+        User user = userRepository.findByEmailIgnoreCase(validUserEmail);
+        userRepository.delete(user);
+        assertThat(userRepository.findByEmailIgnoreCase(validUserEmail)).isNull();
+    }
+
+    /**
+     * Helper method to send the request with the credentials of the registered user.
+     */
+    private <S extends WebTestClient.RequestHeadersSpec<?>> S authenticated(S spec) {
+        spec.headers(headers -> headers.setBasicAuth(validUserEmail, validUserPassword));
+        return spec;
+    }
+
+    /**
+     * Helper method to get the latest recipe id.
+     */
+    private long getLatestRecipeId() {
+        Iterable<Recipe> recipes = recipeRepository.findAll();
+        long latestRecipeId = 0L;
+        for (Recipe recipe : recipes) {
+            if (recipe.getId() > latestRecipeId) {
+                latestRecipeId = recipe.getId();
+            }
+        }
+        return latestRecipeId;
+    }
+}
@@ -0,0 +1,177 @@
+package io.github.dankoller.springrecipe;
+
+import io.github.dankoller.springrecipe.entity.user.User;
+import io.github.dankoller.springrecipe.persistence.ReplicaMonitor;
+import io.github.dankoller.springrecipe.persistence.UserRepository;
+import io.github.dankoller.springrecipe.render.RenderedRecipeCache;
+import io.github.dankoller.springrecipe.request.ConditionalRequest;
+import io.github.dankoller.springrecipe.request.RecipeRequest;
+import io.github.dankoller.springrecipe.service.RecipeService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static io.github.dankoller.springrecipe.config.CacheConfiguration.RECIPES_CACHE;
+import static io.github.dankoller.springrecipe.persistence.ReadWriteRoutingDataSource.ROUTING_METRIC;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+/**
+ * This class runs the application with a second in-memory database as replica and checks that read-only
+ * transactions are routed to it only while it's available, and that recipes aren't cached from a lagging replica.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ReadReplicaRoutingTests {
+    private static final String PRIMARY_URL = "jdbc:h2:mem:routing;DB_CLOSE_DELAY=-1";
+    private static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+    private static final String CATEGORY = "Routing Category";
+    private static final String USER_EMAIL = "routing@example.com";
+    private static final ConditionalRequest UNCONDITIONAL = new ConditionalRequest() {
+        @Override
+        public String getHeader(String name) {
+            return null;
+        }
+
+        @Override
+        public boolean checkNotModified(String eTag, long lastModified) {
+            return false;
+        }
+    };
+
+    private static ConfigurableApplicationContext context;
+
+    @BeforeAll
+    static void start() {
+        context = new SpringApplicationBuilder(SpringrecipeApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=" + PRIMARY_URL,
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.show-sql=false",
+                        "--recipes.cluster.enabled=false",
+                        "--recipes.datasource.replica.url=" + REPLICA_URL,
+                        // Checked by the test only
+                        "--recipes.datasource.replica.check-interval=1h",
+                        "--recipes.datasource.replica.max-lag=0s");
+    }
+
+    @AfterAll
+    static void stop() {
+        context.close();
+    }
+
+    @Test
+    @Order(1)
+    void testReadsFollowReplicaState() throws InterruptedException {
+        RecipeService recipeService = context.getBean(RecipeService.class);
+        ReplicaMonitor replicaMonitor = context.getBean(ReplicaMonitor.class);
+        context.getBean(UserRepository.class).save(new User(USER_EMAIL, "password"));
+
+        // Without a schema the replica can't be queried, so reads fall back to the primary database
+        replicaMonitor.check();
+        assertThat(replicaMonitor.isAvailable()).isFalse();
+        double fallbacks = routed("fallback");
+        assertThat(countByCategory(recipeService)).isEqualTo(0);
+        assertThat(routed("fallback")).isGreaterThan(fallbacks);
+
+        // Migrated and up to date, the replica answers the reads
+        Flyway.configure().dataSource(REPLICA_URL, "sa", "").load().migrate();
+        replicaMonitor.check();
+        assertThat(replicaMonitor.isAvailable()).isTrue();
+        double reads = routed("read-only");
+        assertThat(countByCategory(recipeService)).isEqualTo(0);
+        assertThat(routed("read-only")).isGreaterThan(reads);
+
+        // Writes go to the primary database, which the replica then lags behind
+        double writes = routed("read-write");
+        RecipeRequest request = new RecipeRequest("Routing Recipe", CATEGORY, "Test Description",
+                new String[]{"honey"}, new String[]{"Mix"});
+        assertThat(recipeService.postRecipe(USER_EMAIL, request).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+        assertThat(routed("read-write")).isGreaterThan(writes);
+        Thread.sleep(10);
+        replicaMonitor.check();
+        assertThat(replicaMonitor.isAvailable()).isFalse();
+        assertThat(countByCategory(recipeService)).isEqualTo(1);
+    }
+
+    @Test
+    @Order(2)
+    void testReplicaLaggingBehindDeleteIsNotCached() throws SQLException {
+        RecipeService recipeService = context.getBean(RecipeService.class);
+        ReplicaMonitor replicaMonitor = context.getBean(ReplicaMonitor.class);
+        RecipeRequest request = new RecipeRequest("Lagging Recipe", CATEGORY, "Test Description",
+                new String[]{"honey"}, new String[]{"Mix"});
+        long id = (Long) ((Map<?, ?>) recipeService.postRecipe(USER_EMAIL, request).getBody()).get("id");
+
+        // The replica catches up and is considered available until the next check
+        replicate();
+        replicaMonitor.check();
+        assertThat(replicaMonitor.isAvailable()).isTrue();
+
+        // Deleted on the primary database only, the replica still has the recipe
+        assertThat(recipeService.deleteRecipe(USER_EMAIL, id).getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        double reads = routed("read-only");
+        assertThat(countByCategory(recipeService)).isEqualTo(2);
+        assertThat(routed("read-only")).isGreaterThan(reads);
+
+        // The cache miss is loaded from the primary database, so the deleted recipe isn't served or cached
+        assertThat(recipeService.getRecipe(id, UNCONDITIONAL).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(context.getBean(CacheManager.class).getCache(RECIPES_CACHE).get(id)).isNull();
+        assertThat(context.getBean(RenderedRecipeCache.class).get(id)).isNull();
+        assertThat(recipeService.getRecipe(id, UNCONDITIONAL).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * Helper method to copy the content of the primary database to the replica, replacing the content of the
+     * replica.
+     */
+    private static void replicate() throws SQLException {
+        List<String> statements = new ArrayList<>();
+        try (Connection primary = DriverManager.getConnection(PRIMARY_URL, "sa", "");
+             Statement script = primary.createStatement();
+             ResultSet resultSet = script.executeQuery("script")) {
+            while (resultSet.next()) {
+                statements.add(resultSet.getString(1));
+            }
+        }
+        try (Connection replica = DriverManager.getConnection(REPLICA_URL, "sa", "");
+             Statement statement = replica.createStatement()) {
+            statement.execute("drop all objects");
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    /**
+     * Helper method to count the recipes found by a category query.
+     */
+    private static int countByCategory(RecipeService recipeService) {
+        return ((List<?>) recipeService.getRecipeByParam(CATEGORY, null).getBody()).size();
+    }
+
+    /**
+     * Helper method to get the number of connections routed for the given reason.
+     */
+    private static double routed(String reason) {
+        return context.getBean(MeterRegistry.class).get(ROUTING_METRIC).tag("reason", reason).functionCounter().count();
+    }
+}
@@ -0,0 +1,282 @@
+package io.github.dankoller.springrecipe;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * This class is an end-to-end load test of the REST API. It boots the application on a random port against an
+ * in-memory H2 database, registers users and drives a configurable mix of requests against the recipe endpoints.
+ * It reports the throughput and the latency percentiles per endpoint.
+ * <p>
+ * It is excluded from the regular test run; run it with <code>./gradlew loadTest</code> and configure it with the
+ * system properties <code>loadtest.users</code>, <code>loadtest.threads</code>, <code>loadtest.warmupSeconds</code>,
+ * <code>loadtest.durationSeconds</code> and <code>loadtest.mix</code> (e.g. "create=10,get=60,search=20,update=5,delete=5").
+ * With <code>loadtest.virtualThreads=true</code> the application runs the requests on virtual threads, so the
+ * throughput of both modes can be compared.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.show-sql=false",
+        // The load is generated from a single address and would be throttled otherwise
+        "recipes.rate-limit.enabled=false"
+})
+class RecipeApiLoadTest {
+    private static final String[] CATEGORIES = {"Beverage", "Dessert", "Soup", "Salad", "Main course"};
+    private static final Pattern RECIPE_ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+    // Latencies are recorded in microseconds, up to one minute
+    private static final long HIGHEST_TRACKABLE_LATENCY = TimeUnit.MINUTES.toMicros(1);
+
+    private final int users = Integer.getInteger("loadtest.users", 10);
+    private final int threads = Integer.getInteger("loadtest.threads", 16);
+    private final int warmupSeconds = Integer.getInteger("loadtest.warmupSeconds", 5);
+    private final int durationSeconds = Integer.getInteger("loadtest.durationSeconds", 30);
+    private final String mix = System.getProperty("loadtest.mix", "create=10,get=60,search=20,update=5,delete=5");
+    private static final boolean virtualThreads = Boolean.getBoolean("loadtest.virtualThreads");
+
+    @LocalServerPort
+    private int port;
+
+    @DynamicPropertySource
+    static void threadProperties(DynamicPropertyRegistry registry) {
+        registry.add("recipes.threads.virtual", () -> String.valueOf(virtualThreads));
+    }
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final Map<Operation, Endpoint> endpoints = new EnumMap<>(Operation.class);
+    private final List<LoadUser> loadUsers = new ArrayList<>();
+
+    @Test
+    void load() throws Exception {
+        for (Operation operation : Operation.values()) {
+            endpoints.put(operation, new Endpoint());
+        }
+        for (int i = 0; i < users; i++) {
+            loadUsers.add(register(i));
+        }
+        Operation[] weightedOperations = parseMix(mix);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(durationSeconds);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < end) {
+                    Operation operation = weightedOperations[random.nextInt(weightedOperations.length)];
+                    execute(operation, loadUsers.get(random.nextInt(loadUsers.size())));
+                }
+                return null;
+            }));
+        }
+
+        // Discard everything recorded during the warmup
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(warmupEnd - System.nanoTime()));
+        endpoints.values().forEach(Endpoint::reset);
+        long measurementStart = System.nanoTime();
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        double measuredSeconds = (System.nanoTime() - measurementStart) / 1e9;
+        executor.shutdown();
+
+        report(measuredSeconds);
+        for (Endpoint endpoint : endpoints.values()) {
+            assertThat(endpoint.serverErrors.get()).isZero();
+        }
+    }
+
+    /**
+     * A helper method to execute a single operation and record its latency.
+     */
+    private void execute(Operation operation, LoadUser user) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Long recipeId = user.recipeIds.peekLast();
+        HttpRequest request;
+        switch (operation) {
+            case CREATE -> request = user.request("/api/recipe/new")
+                    .POST(HttpRequest.BodyPublishers.ofString(recipeJson(random)))
+                    .header("Content-Type", "application/json")
+                    .build();
+            case GET -> {
+                LoadUser owner = loadUsers.get(random.nextInt(loadUsers.size()));
+                Long id = owner.recipeIds.peekFirst();
+                if (id == null) {
+                    return;
+                }
+                request = user.request("/api/recipe/" + id).GET().build();
+            }
+            case SEARCH -> {
+                String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+                request = user.request("/api/recipe/search?category="
+                        + URLEncoder.encode(category, StandardCharsets.UTF_8) + "&size=20").GET().build();
+            }
+            case UPDATE -> {
+                if (recipeId == null) {
+                    return;
+                }
+                request = user.request("/api/recipe/" + recipeId)
+                        .PUT(HttpRequest.BodyPublishers.ofString(recipeJson(random)))
+                        .header("Content-Type", "application/json")
+                        .build();
+            }
+            case DELETE -> {
+                recipeId = user.recipeIds.pollLast();
+                if (recipeId == null) {
+                    return;
+                }
+                request = user.request("/api/recipe/" + recipeId).DELETE().build();
+            }
+            default -> throw new IllegalStateException("Unknown operation " + operation);
+        }
+
+        long start = System.nanoTime();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        endpoints.get(operation).record(System.nanoTime() - start, response.statusCode());
+
+        if (operation == Operation.CREATE && response.statusCode() == 200) {
+            Matcher matcher = RECIPE_ID.matcher(response.body());
+            if (matcher.find()) {
+                user.recipeIds.addLast(Long.parseLong(matcher.group(1)));
+            }
+        }
+    }
+
+    /**
+     * A helper method to register a user through the API.
+     */
+    private LoadUser register(int i) throws Exception {
+        LoadUser user = new LoadUser("load-user-" + i + "@example.com", "load-password-" + i);
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/register"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"email\": \"" + user.email + "\", \"password\": \"" + user.password + "\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(200);
+        return user;
+    }
+
+    /**
+     * A helper method to print the throughput and latency percentiles (in milliseconds) per endpoint.
+     */
+    private void report(double seconds) {
+        System.out.printf("%nLoad test (%s threads): %d users, %d threads, %ds warmup, %ds measured, mix %s%n",
+                virtualThreads ? "virtual" : "platform", users, threads, warmupSeconds, durationSeconds, mix);
+        System.out.printf("%-8s %10s %10s %8s %8s %8s %8s %8s %8s%n",
+                "endpoint", "requests", "req/s", "p50", "p99", "p999", "max", "4xx", "5xx");
+        for (Map.Entry<Operation, Endpoint> entry : endpoints.entrySet()) {
+            Histogram histogram = entry.getValue().recorder.getIntervalHistogram();
+            System.out.printf("%-8s %10d %10.1f %8.2f %8.2f %8.2f %8.2f %8d %8d%n",
+                    entry.getKey().name().toLowerCase(Locale.ROOT),
+                    histogram.getTotalCount(),
+                    histogram.getTotalCount() / seconds,
+                    histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0,
+                    entry.getValue().clientErrors.get(),
+                    entry.getValue().serverErrors.get());
+        }
+    }
+
+    private static Operation[] parseMix(String mix) {
+        List<Operation> operations = new ArrayList<>();
+        for (String part : mix.split(",")) {
+            String[] weight = part.trim().split("=");
+            Operation operation = Operation.valueOf(weight[0].trim().toUpperCase(Locale.ROOT));
+            operations.addAll(Collections.nCopies(Integer.parseInt(weight[1].trim()), operation));
+        }
+        return operations.toArray(new Operation[0]);
+    }
+
+    private static String recipeJson(ThreadLocalRandom random) {
+        int n = random.nextInt(1_000_000);
+        return """
+                {
+                  "name": "Load Recipe %d",
+                  "category": "%s",
+                  "description": "Recipe number %d of the load test",
+                  "ingredients": ["boiled water", "honey", "fresh mint leaves", "ingredient %d"],
+                  "directions": ["Boil water", "Pour boiling hot water into a mug", "Add fresh mint leaves",
+                  "Mix and let the mint leaves seep for 3-5 minutes", "Add honey and mix again"]
+                }""".formatted(n, CATEGORIES[random.nextInt(CATEGORIES.length)], n, n);
+    }
+
+    private enum Operation {
+        CREATE, GET, SEARCH, UPDATE, DELETE
+    }
+
+    /**
+     * The latency histogram and error counters of an endpoint.
+     */
+    private static class Endpoint {
+        private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_LATENCY, 3);
+        private final AtomicLong clientErrors = new AtomicLong();
+        private final AtomicLong serverErrors = new AtomicLong();
+
+        private void record(long nanos, int status) {
+            recorder.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_TRACKABLE_LATENCY));
+            if (status >= 500) {
+                serverErrors.incrementAndGet();
+            } else if (status >= 400) {
+                clientErrors.incrementAndGet();
+            }
+        }
+
+        private void reset() {
+            recorder.reset();
+            clientErrors.set(0);
+            serverErrors.set(0);
+        }
+    }
+
+    /**
+     * A registered user and the ids of the recipes it created.
+     */
+    private class LoadUser {
+        private final String email;
+        private final String password;
+        private final String authorization;
+        private final Deque<Long> recipeIds = new ConcurrentLinkedDeque<>();
+
+        private LoadUser(String email, String password) {
+            this.email = email;
+            this.password = password;
+            this.authorization = "Basic " + Base64.getEncoder()
+                    .encodeToString((email + ":" + password).getBytes(StandardCharsets.UTF_8));
+        }
+
+        private HttpRequest.Builder request(String path) {
+            return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Authorization", authorization);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package io.github.dankoller.springrecipe;
+
+import io.github.dankoller.springrecipe.changes.RecipeChange;
+import io.github.dankoller.springrecipe.changes.RecipeChangeFeed;
+import io.github.dankoller.springrecipe.entity.Recipe;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+/**
+ * This class tests that the change feed sends the live changes, resumes after a buffered Last-Event-ID with exactly
+ * the missed changes, and ends the stream of a subscriber that fell behind the ring buffer with a resync event.
+ */
+class RecipeChangeFeedTests {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // No heartbeats during the tests
+    private final RecipeChangeFeed feed = new RecipeChangeFeed(meterRegistry, 4, Duration.ofHours(1));
+
+    @AfterEach
+    void tearDown() {
+        feed.shutdown();
+    }
+
+    @Test
+    void testLiveChanges() throws Exception {
+        CompletableFuture<List<ServerSentEvent<RecipeChange>>> events = feed.subscribe(null)
+                .take(3)
+                .collectList()
+                .toFuture();
+
+        feed.created(recipe(1, 0));
+        feed.updated(recipe(1, 1));
+        feed.deleted(1);
+
+        List<ServerSentEvent<RecipeChange>> received = events.get(5, TimeUnit.SECONDS);
+        assertThat(received.get(0).event()).isEqualTo(RecipeChange.CREATED);
+        assertThat(received.get(0).data().version()).isEqualTo(0L);
+        assertThat(received.get(1).event()).isEqualTo(RecipeChange.UPDATED);
+        assertThat(received.get(1).data().version()).isEqualTo(1L);
+        assertThat(received.get(2).event()).isEqualTo(RecipeChange.DELETED);
+        assertThat(received.get(2).data().id()).isEqualTo(1L);
+        assertThat(received.get(2).data().version()).isNull();
+        // The event id is the sequence number, counting up by one per change
+        long first = Long.parseLong(received.get(0).id());
+        assertThat(received.get(0).data().sequence()).isEqualTo(first);
+        assertThat(received.get(2).data().sequence()).isEqualTo(first + 2);
+    }
+
+    @Test
+    void testResumeWithBufferedLastEventId() throws Exception {
+        CompletableFuture<List<ServerSentEvent<RecipeChange>>> events = feed.subscribe(null)
+                .take(3)
+                .collectList()
+                .toFuture();
+        feed.created(recipe(2, 0));
+        feed.updated(recipe(2, 1));
+        feed.deleted(2);
+        List<ServerSentEvent<RecipeChange>> live = events.get(5, TimeUnit.SECONDS);
+
+        // Reconnects after the first change, no further changes are published
+        List<ServerSentEvent<RecipeChange>> resumed = feed.subscribe(Long.parseLong(live.get(0).id()))
+                .take(Duration.ofSeconds(1))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(resumed.size()).isEqualTo(2);
+        assertThat(resumed.get(0).id()).isEqualTo(live.get(1).id());
+        assertThat(resumed.get(0).event()).isEqualTo(RecipeChange.UPDATED);
+        assertThat(resumed.get(1).id()).isEqualTo(live.get(2).id());
+        assertThat(resumed.get(1).event()).isEqualTo(RecipeChange.DELETED);
+        assertThat(meterRegistry.counter(RecipeChangeFeed.RESYNCS_METRIC).count()).isEqualTo(0.0);
+    }
+
+    @Test
+    void testSlowSubscriberIsResynced() throws Exception {
+        List<ServerSentEvent<RecipeChange>> received = new CopyOnWriteArrayList<>();
+        CountDownLatch completed = new CountDownLatch(1);
+        BaseSubscriber<ServerSentEvent<RecipeChange>> subscriber = new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                // Doesn't read anything until the changes are published
+            }
+
+            @Override
+            protected void hookOnNext(ServerSentEvent<RecipeChange> event) {
+                received.add(event);
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                completed.countDown();
+            }
+        };
+        feed.subscribe(null).subscribe(subscriber);
+
+        // Far more changes than the ring buffer and the prefetched events hold
+        int changes = 200;
+        for (int i = 0; i < changes; i++) {
+            feed.updated(recipe(3, i));
+        }
+        subscriber.requestUnbounded();
+
+        assertThat(completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(received.size()).isLessThan(changes);
+        ServerSentEvent<RecipeChange> last = received.get(received.size() - 1);
+        assertThat(last.event()).isEqualTo(RecipeChange.RESYNC);
+        // The resync carries the latest sequence number to resume from
+        long first = Long.parseLong(received.get(0).id());
+        assertThat(last.data().sequence()).isEqualTo(first + changes - 1);
+        // The changes before the resync are the first ones, without gaps
+        for (int i = 0; i < received.size() - 1; i++) {
+            assertThat(received.get(i).data().sequence()).isEqualTo(first + i);
+        }
+        assertThat(meterRegistry.counter(RecipeChangeFeed.RESYNCS_METRIC).count()).isEqualTo(1.0);
+    }
+
+    /**
+     * Helper method to create a version of a recipe.
+     */
+    private static Recipe recipe(long id, long version) {
+        Recipe recipe = new Recipe("Test Recipe", "Test Category", LocalDateTime.now(), "Test Description",
+                new String[]{"water"}, new String[]{"Boil water"}, null);
+        recipe.setId(id);
+        recipe.setVersion(version);
+        return recipe;
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.dankoller.springrecipe;
+
+import io.github.dankoller.springrecipe.entity.Recipe;
+import io.github.dankoller.springrecipe.persistence.RecipeIngredient;
+import io.github.dankoller.springrecipe.search.CategoryFacetIndex;
+import io.github.dankoller.springrecipe.search.IngredientIndex;
+import io.github.dankoller.springrecipe.search.RecipeSearchIndex;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+/**
+ * This class checks that the in-memory indexes keep the newest version of a recipe if writes reach them out of
+ * order or after its deletion, and that the ingredient index ranks the ids it's rebuilt with.
+ */
+class RecipeIndexTests {
+    @Test
+    void testOlderVersionIsIgnored() {
+        RecipeSearchIndex searchIndex = new RecipeSearchIndex();
+        IngredientIndex ingredientIndex = new IngredientIndex();
+        CategoryFacetIndex categoryFacetIndex = new CategoryFacetIndex();
+        Recipe older = recipe(1, "Tea", "Beverage", "mint");
+        Recipe newer = recipe(2, "Lemonade", "Drink", "lemon");
+
+        // The later write is indexed first
+        for (Recipe recipe : List.of(newer, older)) {
+            searchIndex.index(recipe);
+            ingredientIndex.index(recipe);
+            categoryFacetIndex.index(recipe);
+        }
+
+        assertThat(searchIndex.search("lemonade").size()).isEqualTo(1);
+        assertThat(searchIndex.search("tea").size()).isEqualTo(0);
+        assertThat(ingredientIndex.search(List.of("lemon"), 1).size()).isEqualTo(1);
+        assertThat(ingredientIndex.search(List.of("mint"), 1).size()).isEqualTo(0);
+        assertThat(categoryFacetIndex.top(10).size()).isEqualTo(1);
+        assertThat(categoryFacetIndex.top(10).get(0).category()).isEqualTo("Drink");
+    }
+
+    @Test
+    void testRemovedRecipeIsNotIndexedAgain() {
+        RecipeSearchIndex searchIndex = new RecipeSearchIndex();
+        IngredientIndex ingredientIndex = new IngredientIndex();
+        CategoryFacetIndex categoryFacetIndex = new CategoryFacetIndex();
+        Recipe indexed = recipe(2, "Tea", "Beverage", "mint");
+        Recipe older = recipe(1, "Tea", "Beverage", "mint");
+        searchIndex.index(indexed);
+        ingredientIndex.index(indexed);
+        categoryFacetIndex.index(indexed);
+
+        // The recipe is deleted, then a write that started before the deletion reaches the indexes
+        searchIndex.remove(indexed.getId());
+        ingredientIndex.remove(indexed.getId());
+        categoryFacetIndex.remove(indexed.getId());
+        searchIndex.index(older);
+        ingredientIndex.index(older);
+        categoryFacetIndex.index(older);
+
+        assertThat(searchIndex.search("tea").size()).isEqualTo(0);
+        assertThat(ingredientIndex.search(List.of("mint"), 1).size()).isEqualTo(0);
+        assertThat(categoryFacetIndex.top(10).size()).isEqualTo(0);
+    }
+
+    @Test
+    void testIngredientIndexRebuild() {
+        IngredientIndex ingredientIndex = new IngredientIndex();
+        LocalDateTime now = LocalDateTime.now();
+        ingredientIndex.rebuild(List.of(
+                new RecipeIngredient(1, now.minusDays(1), 0, "Fresh Mint"),
+                new RecipeIngredient(2, now, 0, "mint"),
+                new RecipeIngredient(1, now.minusDays(1), 0, "lemon"),
+                new RecipeIngredient(3, now, 0, "sugar")));
+
+        // Ranked by the matched ingredients, then by date
+        assertThat(ingredientIndex.search(List.of("mint", "lemon"), 1)).isEqualTo(List.of(1L, 2L));
+        assertThat(ingredientIndex.search(List.of("mint"), 1)).isEqualTo(List.of(2L, 1L));
+        assertThat(ingredientIndex.search(List.of("mint", "lemon"), 2)).isEqualTo(List.of(1L));
+    }
+
+    /**
+     * Helper method to create a version of the recipe with id 1.
+     */
+    private static Recipe recipe(long version, String name, String category, String ingredient) {
+        Recipe recipe = new Recipe(name, category, LocalDateTime.now(), "Test Description",
+                new String[]{ingredient}, new String[]{"Mix"}, null);
+        recipe.setId(1);
+        recipe.setVersion(version);
+        return recipe;
+    }
+}
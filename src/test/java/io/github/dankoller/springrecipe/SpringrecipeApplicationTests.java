@@ -1,26 +1,51 @@
 package io.github.dankoller.springrecipe;
 
+import com.jayway.jsonpath.JsonPath;
+import io.github.dankoller.springrecipe.auth.TokenService;
 import io.github.dankoller.springrecipe.entity.Recipe;
 import io.github.dankoller.springrecipe.entity.user.User;
+import io.github.dankoller.springrecipe.metrics.ServiceMetricsAspect;
 import io.github.dankoller.springrecipe.persistence.RecipeRepository;
+import io.github.dankoller.springrecipe.ratelimit.RateLimiter;
+import io.github.dankoller.springrecipe.render.RenderedRecipeCache;
+import io.github.dankoller.springrecipe.request.RecipeRequest;
 import io.github.dankoller.springrecipe.persistence.UserRepository;
+import io.github.dankoller.springrecipe.service.RecipeExportService;
+import io.github.dankoller.springrecipe.service.RecipeImportService;
 import io.github.dankoller.springrecipe.service.RecipeService;
 import io.github.dankoller.springrecipe.service.UserService;
+import io.github.dankoller.springrecipe.sql.QueryCounter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.regex.Pattern;
 
+import static io.github.dankoller.springrecipe.config.CacheConfiguration.RECIPES_CACHE;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -34,6 +59,10 @@ class SpringrecipeApplicationTests {
     private static final String validUserPassword = UUID.randomUUID().toString().substring(0, 10);
     private final String invalidUserEmail = "test.@.com";
     private final String invalidUserPassword = "test";
+    // Statement shapes reading or writing the user table (not columns like author_id)
+    private static final Pattern USER_TABLE = Pattern.compile("\\buser\\b", Pattern.CASE_INSENSITIVE);
+    // Imports and exports are expensive for the rate limiter, so the export test uses its own client address
+    private static final String EXPORT_CLIENT_ADDRESS = "192.0.2.20";
 
     // Recipes
     private final String validRecipeJson = """
@@ -73,6 +102,18 @@ class SpringrecipeApplicationTests {
     private RecipeRepository recipeRepository;
     @Autowired
     private RecipeService recipeService;
+    @Autowired
+    private RecipeImportService recipeImportService;
+    @Autowired
+    private RecipeExportService recipeExportService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private RenderedRecipeCache renderedRecipeCache;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private TokenService tokenService;
 
     // Test if the controllers are initialized
     @Test
@@ -88,15 +129,44 @@ class SpringrecipeApplicationTests {
     @Test
     @Order(2)
     void testUserRegistration() throws Exception {
-        // Test valid user registration
-        mockMvc.perform(post("/api/register")
+        // Test valid user registration (the password is hashed asynchronously)
+        MvcResult registration = mockMvc.perform(post("/api/register")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content("{\n" +
                                 "  \"email\": \"" + validUserEmail + "\",\n" +
                                 "  \"password\": \"" + validUserPassword + "\"\n" +
                                 "}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(registration))
                 .andExpect(status().isOk());
 
+        // Test duplicate user registration
+        MvcResult duplicate = mockMvc.perform(post("/api/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\n" +
+                                "  \"email\": \"" + validUserEmail.toUpperCase() + "\",\n" +
+                                "  \"password\": \"" + validUserPassword + "\"\n" +
+                                "}"))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(duplicate))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("User already exists"));
+
+        // Test user registration failing at the database (a valid email too long for its column)
+        String longEmail = "a".repeat(60) + "@" + ("b".repeat(49) + ".").repeat(5) + "com";
+        MvcResult tooLong = mockMvc.perform(post("/api/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\n" +
+                                "  \"email\": \"" + longEmail + "\",\n" +
+                                "  \"password\": \"" + validUserPassword + "\"\n" +
+                                "}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(tooLong))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Invalid registration"));
+
         // Test invalid user registration
         mockMvc.perform(post("/api/register")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -107,9 +177,53 @@ class SpringrecipeApplicationTests {
                 .andExpect(status().isBadRequest());
     }
 
-    // Test if the user can post a new recipe
+    // Test if the user can log in, authenticate with the access token and refresh it
     @Test
     @Order(3)
+    void testTokenAuthentication() throws Exception {
+        // Test valid login
+        String tokens = mockMvc.perform(post("/api/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\n" +
+                                "  \"email\": \"" + validUserEmail + "\",\n" +
+                                "  \"password\": \"" + validUserPassword + "\"\n" +
+                                "}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String accessToken = JsonPath.read(tokens, "$.access_token");
+        String refreshToken = JsonPath.read(tokens, "$.refresh_token");
+
+        // Test invalid login
+        mockMvc.perform(post("/api/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\n" +
+                                "  \"email\": \"" + validUserEmail + "\",\n" +
+                                "  \"password\": \"" + invalidUserPassword + "\"\n" +
+                                "}"))
+                .andExpect(status().isUnauthorized());
+
+        // Test access with a valid and an invalid token
+        mockMvc.perform(get("/api/recipe/search?name=Test Recipe")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/recipe/search?name=Test Recipe")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken + "x"))
+                .andExpect(status().isUnauthorized());
+
+        // Test refresh (a refresh token isn't accepted as access token)
+        mockMvc.perform(get("/api/recipe/search?name=Test Recipe")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + refreshToken))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/api/token/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refresh_token\": \"" + refreshToken + "\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.access_token").isString());
+    }
+
+    // Test if the user can post a new recipe
+    @Test
+    @Order(4)
     void testRecipeCreation() throws Exception {
         // Set user as authenticated
         setUserAsAuthenticated();
@@ -129,27 +243,83 @@ class SpringrecipeApplicationTests {
 
     // Test if the user can patch a recipe
     @Test
-    @Order(4)
+    @Order(5)
     void testRecipePatching() throws Exception {
         // Set user as authenticated
         setUserAsAuthenticated();
+        long id = getLatestRecipeId();
+        // Cache the recipe before it's patched
+        mockMvc.perform(get("/api/recipe/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Test Recipe"));
 
-        // Test valid recipe patching
-        mockMvc.perform(put("/api/recipe/" + getLatestRecipeId())
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(patchedRecipeJson))
-                .andExpect(status().isNoContent());
+        // Test valid recipe patching: the owner-checked load of the recipe, its ingredients and its directions, the
+        // update of the recipe and the cache invalidation. The unchanged ingredients and directions aren't written.
+        try (QueryCounter.Recording queries = QueryCounter.start()) {
+            mockMvc.perform(put("/api/recipe/" + id)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(patchedRecipeJson))
+                    .andExpect(status().isNoContent());
+            assertThat(queries.count()).as("%s", queries.getStatements()).isLessThanOrEqualTo(5);
+            assertThat(queries.getStatements().stream()
+                    .filter(statement -> !statement.startsWith("select"))
+                    .noneMatch(statement -> statement.contains("recipe_ingredient")
+                            || statement.contains("recipe_direction")))
+                    .as("%s", queries.getStatements()).isTrue();
+        }
 
         // Test invalid recipe patching
-        mockMvc.perform(put("/api/recipe/" + getLatestRecipeId())
+        mockMvc.perform(put("/api/recipe/" + id)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(invalidRecipeJson))
                 .andExpect(status().isBadRequest());
+
+        // The cached recipe was replaced by the patched one: ingredient searches return it, and so does a read after
+        // only its rendered JSON was evicted
+        mockMvc.perform(get("/api/recipe/search?ingredients=mint"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.name == 'Test Recipe')]").isEmpty())
+                .andExpect(jsonPath("$[?(@.name == 'Patched Recipe')].category").value("Patched Category"));
+        renderedRecipeCache.evict(id);
+        mockMvc.perform(get("/api/recipe/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Patched Recipe"))
+                .andExpect(jsonPath("$.category").value("Patched Category"));
+
+        // Test the statements of reading the patched recipe: none while it's cached
+        String eTag;
+        try (QueryCounter.Recording queries = QueryCounter.start()) {
+            eTag = mockMvc.perform(get("/api/recipe/" + id))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            assertThat(queries.count()).as("%s", queries.getStatements()).isEqualTo(0);
+        }
+        // Weak, the gzip compressed representation carries the same ETag
+        assertThat(eTag.startsWith("W/\"")).isTrue();
+        renderedRecipeCache.evict(id);
+        cacheManager.getCache(RECIPES_CACHE).evict(id);
+
+        // Uncached, a conditional request only needs the version lookup
+        try (QueryCounter.Recording queries = QueryCounter.start()) {
+            mockMvc.perform(get("/api/recipe/" + id).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                    .andExpect(status().isNotModified());
+            assertThat(queries.count()).as("%s", queries.getStatements()).isLessThanOrEqualTo(1);
+        }
+
+        // The recipe, its ingredients and its directions, each once, but never its author
+        try (QueryCounter.Recording queries = QueryCounter.start()) {
+            mockMvc.perform(get("/api/recipe/" + id))
+                    .andExpect(status().isOk());
+            assertThat(queries.count()).as("%s", queries.getStatements()).isLessThanOrEqualTo(3);
+            assertThat(queries.getRepeatedStatements()).as("%s", queries.getStatements()).isEqualTo(Map.of());
+            assertThat(queries.getStatements().stream().noneMatch(statement -> USER_TABLE.matcher(statement).find()))
+                    .as("%s", queries.getStatements()).isTrue();
+        }
     }
 
     // Test if the user can query a recipe by name
     @Test
-    @Order(5)
+    @Order(6)
     void testRecipeQuery() throws Exception {
         // Set user as authenticated
         setUserAsAuthenticated();
@@ -162,11 +332,24 @@ class SpringrecipeApplicationTests {
         mockMvc.perform(get("/api/recipe/search?name=Invalid Recipe"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(0)));
+
+        // Test ingredient queries ("mint" matches "fresh mint leaves")
+        mockMvc.perform(get("/api/recipe/search?ingredients=mint,Honey"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.name == 'Patched Recipe')]").isNotEmpty());
+        mockMvc.perform(get("/api/recipe/search?ingredients=mint,saffron"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.name == 'Patched Recipe')]").isEmpty());
+        mockMvc.perform(get("/api/recipe/search?ingredients=mint,saffron&match=any"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.name == 'Patched Recipe')]").isNotEmpty());
+        mockMvc.perform(get("/api/recipe/search?ingredients=mint,saffron&match=3"))
+                .andExpect(status().isBadRequest());
     }
 
     // Test if the user can query a recipe by category
     @Test
-    @Order(6)
+    @Order(7)
     void testRecipeQueryByCategory() throws Exception {
         // Set user as authenticated
         setUserAsAuthenticated();
@@ -179,11 +362,187 @@ class SpringrecipeApplicationTests {
         mockMvc.perform(get("/api/recipe/search?category=Invalid Category"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(0)));
+
+        // Test the category counts (the recipe was moved to its category by the patch)
+        mockMvc.perform(get("/api/recipe/categories"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.category == 'Patched Category')].count").isNotEmpty())
+                .andExpect(jsonPath("$[?(@.category == 'Test Category')]").isEmpty());
+        mockMvc.perform(get("/api/recipe/categories?top=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+        mockMvc.perform(get("/api/recipe/categories?top=0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // Test if category queries can be paged by page number and by cursor, and name queries by page number
+    @Test
+    @Order(8)
+    void testRecipePaging() throws Exception {
+        // Set user as authenticated
+        setUserAsAuthenticated();
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/api/recipe/new")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(validRecipeJson
+                                    .replace("Test Recipe", "Paging Recipe " + i)
+                                    .replace("Test Category", "Paging Category")))
+                    .andExpect(status().isOk());
+        }
+
+        // First page, the newest recipes first
+        MvcResult first = mockMvc.perform(get("/api/recipe/search?category=Paging Category&size=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].name").value("Paging Recipe 2"))
+                .andExpect(jsonPath("$[1].name").value("Paging Recipe 1"))
+                .andReturn();
+        String cursor = first.getResponse().getHeader(RecipeService.NEXT_CURSOR_HEADER);
+        assertThat(cursor).isNotNull();
+
+        // Next page via the cursor, the last one has no cursor
+        MvcResult next = mockMvc.perform(get("/api/recipe/search")
+                        .param("category", "Paging Category")
+                        .param("size", "2")
+                        .param("after", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name").value("Paging Recipe 0"))
+                .andReturn();
+        assertThat(next.getResponse().getHeader(RecipeService.NEXT_CURSOR_HEADER)).isNull();
+
+        // The same page by page number
+        mockMvc.perform(get("/api/recipe/search?category=Paging Category&size=2&page=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name").value("Paging Recipe 0"));
+
+        // Name queries carry the next page number
+        MvcResult byName = mockMvc.perform(get("/api/recipe/search?name=Paging Recipe&size=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andReturn();
+        assertThat(byName.getResponse().getHeader(RecipeService.NEXT_PAGE_HEADER)).isEqualTo("1");
+
+        // Invalid sizes, pages and cursors
+        mockMvc.perform(get("/api/recipe/search?category=Paging Category&size=0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/recipe/search?category=Paging Category&size=101"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/recipe/search?category=Paging Category&page=-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/recipe/search?category=Paging Category&after=not-a-cursor"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/recipe/search")
+                        .param("category", "Paging Category")
+                        .param("page", "1")
+                        .param("after", cursor))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/recipe/search")
+                        .param("name", "Paging Recipe")
+                        .param("after", cursor))
+                .andExpect(status().isBadRequest());
+
+        // Delete the recipes again, so the user can be deleted
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(delete("/api/recipe/" + getLatestRecipeId()))
+                    .andExpect(status().isNoContent());
+        }
+    }
+
+    // Test if the user can import recipes, and if lines failing at the database are reported instead of failing the
+    // import
+    @Test
+    @Order(9)
+    void testRecipeImport() throws Exception {
+        // Set user as authenticated
+        setUserAsAuthenticated();
+
+        String importedRecipe = validRecipeJson.replace("\n", "").replace("Test Recipe", "Imported Recipe");
+        mockMvc.perform(post("/api/recipe/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(importedRecipe + "\n{ not json }\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.errors[0].line").value(2));
+
+        // The name doesn't fit into its column, so the chunk fails when it's flushed. It is retried in parts, so only
+        // that line fails and the lines around it are imported.
+        String tooLongRecipe = validRecipeJson.replace("\n", "").replace("Test Recipe", "x".repeat(300));
+        mockMvc.perform(post("/api/recipe/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(importedRecipe + "\n" + tooLongRecipe + "\n" + importedRecipe + "\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.errors", hasSize(1)))
+                .andExpect(jsonPath("$.errors[0].line").value(2));
+        mockMvc.perform(get("/api/recipe/search?name=Imported Recipe"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)));
+
+        // Delete the imported recipes again, so the user can be deleted
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(delete("/api/recipe/" + getLatestRecipeId()))
+                    .andExpect(status().isNoContent());
+        }
+    }
+
+    // Test if the user can export recipes as NDJSON, filtered by category and date
+    @Test
+    @Order(10)
+    void testRecipeExport() throws Exception {
+        // Set user as authenticated
+        setUserAsAuthenticated();
+
+        LocalDateTime beforeImport = LocalDateTime.now().minusSeconds(1).withNano(0);
+        String exportedRecipe = validRecipeJson.replace("\n", "").replace("Test Category", "Export Category");
+        mockMvc.perform(post("/api/recipe/import")
+                        .with(exportClient())
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(exportedRecipe + "\n" + exportedRecipe.replace("Test Recipe", "Second Recipe")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2));
+
+        // The ids are read from a cursor, then the recipes are loaded in one query per window and their ingredients
+        // and directions in one batch each, instead of once per recipe
+        List<String> exported = new ArrayList<>();
+        try (QueryCounter.Recording queries = QueryCounter.start()) {
+            recipeExportService.writeRecipes("Export Category", null, null,
+                    line -> exported.add(new String(line, StandardCharsets.UTF_8)));
+            assertThat(exported.size()).isEqualTo(2);
+            assertThat(queries.count()).as("%s", queries.getStatements()).isLessThanOrEqualTo(4);
+            assertThat(queries.getRepeatedStatements()).as("%s", queries.getStatements()).isEqualTo(Map.of());
+        }
+
+        // One recipe per line
+        String[] lines = export("/api/recipe/export?category=export category").split("\n");
+        assertThat(lines.length).isEqualTo(2);
+        for (String line : lines) {
+            assertThat(JsonPath.<String>read(line, "$.category")).isEqualTo("Export Category");
+        }
+
+        // Date filters
+        String from = beforeImport.toString();
+        assertThat(export("/api/recipe/export?category=Export Category&from=" + from).split("\n").length)
+                .isEqualTo(2);
+        assertThat(export("/api/recipe/export?category=Export Category&to=" + from)).isEqualTo("");
+        assertThat(export("/api/recipe/export?category=Invalid Category")).isEqualTo("");
+        mockMvc.perform(get("/api/recipe/export?from=" + from + "&to=" + from).with(exportClient()))
+                .andExpect(status().isBadRequest());
+
+        // Delete the imported recipes again, so the user can be deleted
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(delete("/api/recipe/" + getLatestRecipeId()))
+                    .andExpect(status().isNoContent());
+        }
     }
 
     // Test if the user can delete a recipe
     @Test
-    @Order(7)
+    @Order(11)
     void testRecipeDeletion() throws Exception {
         // Set user as authenticated
         setUserAsAuthenticated();
@@ -199,13 +558,117 @@ class SpringrecipeApplicationTests {
 
     // Cleanups (Test if the user is deleted)
     @Test
-    @Order(8)
+    @Order(12)
     void cleanup() {
         User user = userRepository.findByEmailIgnoreCase(validUserEmail);
         userRepository.delete(user);
         assertThat(userRepository.findByEmailIgnoreCase(validUserEmail)).isNull();
     }
 
+    // Test if a deleted user can't write recipes with a token that's still valid
+    @Test
+    @Order(13)
+    void testDeletedUserCantWrite() throws Exception {
+        RecipeRequest request = new RecipeRequest("Orphan Recipe", "Test Category", "Test Description",
+                new String[]{"honey"}, new String[]{"Mix"});
+        assertThat(recipeService.postRecipe(validUserEmail, request).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(recipeImportService.importRecipes(validUserEmail,
+                new ByteArrayInputStream(validRecipeJson.replace("\n", "").getBytes(StandardCharsets.UTF_8)))
+                .getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(recipeRepository.findAllByCategoryKeyOrderByDateDesc("test category").stream()
+                .noneMatch(recipe -> recipe.getAuthor() == null))
+                .isTrue();
+    }
+
+    // Test if the service operations are timed
+    @Test
+    @Order(14)
+    void testServiceMetrics() {
+        assertThat(meterRegistry.find(ServiceMetricsAspect.TIMER_NAME)
+                .tag("method", "register")
+                .tag("outcome", "200")
+                .timer()).isNotNull();
+        assertThat(meterRegistry.find(ServiceMetricsAspect.TIMER_NAME)
+                .tag("method", "getRecipeByParam")
+                .timer()).isNotNull();
+        assertThat(meterRegistry.find(ServiceMetricsAspect.SEARCH_RESULTS_NAME)
+                .tag("method", "getRecipeByParam")
+                .summary()).isNotNull();
+    }
+
+    @Test
+    @Order(15)
+    void testRateLimit() throws Exception {
+        // Searches cost 5 tokens, so a client exhausts its burst of 200 tokens after about 40 of them
+        MvcResult rejected = null;
+        for (int i = 0; i < 100 && rejected == null; i++) {
+            MvcResult result = mockMvc.perform(get("/api/recipe/search").param("name", "tea")
+                            .with(request -> {
+                                request.setRemoteAddr("192.0.2.1");
+                                return request;
+                            }))
+                    .andReturn();
+            if (result.getResponse().getStatus() == 429) {
+                rejected = result;
+            }
+        }
+        assertThat(rejected).isNotNull();
+        assertThat(rejected.getResponse().getHeader(HttpHeaders.RETRY_AFTER)).isNotNull();
+        assertThat(meterRegistry.find(RateLimiter.REJECTIONS_METRIC)
+                .tag("scope", "client")
+                .tag("endpoint", "search")
+                .counter()).isNotNull();
+        double clientRejections = meterRegistry.get(RateLimiter.REJECTIONS_METRIC)
+                .tag("scope", "client")
+                .tag("endpoint", "search")
+                .counter().count();
+        // Other clients aren't affected
+        assertThat(mockMvc.perform(get("/api/recipe/search").param("name", "tea"))
+                .andReturn().getResponse().getStatus()).isNotEqualTo(429);
+
+        // A user is limited across addresses: the burst of 100 tokens lasts for about 20 searches, while each of the
+        // two addresses stays below its own limit
+        String accessToken = tokenService.issue("ratelimit@example.com").accessToken();
+        rejected = null;
+        for (int i = 0; i < 100 && rejected == null; i++) {
+            String address = i % 2 == 0 ? "192.0.2.10" : "192.0.2.11";
+            MvcResult result = mockMvc.perform(get("/api/recipe/search").param("name", "tea")
+                            .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
+                            .with(request -> {
+                                request.setRemoteAddr(address);
+                                return request;
+                            }))
+                    .andReturn();
+            if (result.getResponse().getStatus() == 429) {
+                rejected = result;
+            }
+        }
+        assertThat(rejected).isNotNull();
+        assertThat(meterRegistry.find(RateLimiter.REJECTIONS_METRIC)
+                .tag("scope", "user")
+                .tag("endpoint", "search")
+                .counter()).isNotNull();
+        assertThat(meterRegistry.find(RateLimiter.REJECTIONS_METRIC)
+                .tag("scope", "client")
+                .tag("endpoint", "search")
+                .counter().count()).isEqualTo(clientRejections);
+    }
+
+    @Test
+    @Order(16)
+    void testChangeFeedResync() throws Exception {
+        setUserAsAuthenticated();
+
+        // Resuming after a change that isn't buffered anymore ends the stream with a resync event
+        MvcResult changes = mockMvc.perform(get("/api/recipe/changes").header("Last-Event-ID", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        changes.getAsyncResult(5000);
+        assertThat(changes.getResponse().getContentAsString()).contains("event:resync");
+    }
+
     /**
      * Helper method to set the user as authenticated.
      */
@@ -215,6 +678,29 @@ class SpringrecipeApplicationTests {
                 .setAuthentication(new UsernamePasswordAuthenticationToken(validUserEmail, validUserPassword));
     }
 
+    /**
+     * Helper method to run an export and get the streamed body.
+     */
+    private String export(String uri) throws Exception {
+        MvcResult result = mockMvc.perform(get(uri).accept(MediaType.APPLICATION_NDJSON).with(exportClient()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    /**
+     * Helper method to send a request from the client address of the export test.
+     */
+    private RequestPostProcessor exportClient() {
+        return request -> {
+            request.setRemoteAddr(EXPORT_CLIENT_ADDRESS);
+            return request;
+        };
+    }
+
     /**
      * Helper method to get the latest recipe id.
      */